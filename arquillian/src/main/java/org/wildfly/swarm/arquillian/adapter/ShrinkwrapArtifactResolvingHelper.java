@@ -29,6 +29,8 @@ import org.wildfly.swarm.tools.ArtifactSpec;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -86,6 +88,26 @@ public class ShrinkwrapArtifactResolvingHelper implements ArtifactResolvingHelpe
         }).collect(Collectors.toSet());
     }
 
+    /**
+     * Download up to {@code threads} artifacts from a repository at once.
+     */
+    public ShrinkwrapArtifactResolvingHelper downloadThreads(final int threads) {
+        configProperty("aether.connector.basic.threads", threads);
+        configProperty("maven.artifact.threads", threads);
+        configProperty("aether.metadataResolver.threads", threads);
+
+        return this;
+    }
+
+    /**
+     * Set a configuration property of the underlying repository session.
+     */
+    public ShrinkwrapArtifactResolvingHelper configProperty(final String key, final Object value) {
+        this.configProperties.put(key, value);
+
+        return this;
+    }
+
     public ShrinkwrapArtifactResolvingHelper repositoryListener(final RepositoryListener l) {
         this.repositoryListener = l;
 
@@ -102,6 +124,9 @@ public class ShrinkwrapArtifactResolvingHelper implements ArtifactResolvingHelpe
         final DefaultRepositorySystemSession session = session();
         session.setRepositoryListener(this.repositoryListener);
         session.setTransferListener(this.transferListener);
+        for (Map.Entry<String, Object> each : this.configProperties.entrySet()) {
+            session.setConfigProperty(each.getKey(), each.getValue());
+        }
     }
 
     private void completeTransferListener() {
@@ -125,4 +150,5 @@ public class ShrinkwrapArtifactResolvingHelper implements ArtifactResolvingHelpe
     private final ConfigurableMavenResolverSystem resolver;
     private CompleteableTransferListener transferListener;
     private RepositoryListener repositoryListener;
+    private final Map<String, Object> configProperties = new HashMap<>();
 }
@@ -30,6 +30,10 @@ import java.util.List;
 import org.jboss.modules.xml.MXParser;
 import org.jboss.modules.xml.XmlPullParser;
 import org.jboss.modules.xml.XmlPullParserException;
+import org.wildfly.swarm.bootstrap.m2.ArtifactStore;
+import org.wildfly.swarm.bootstrap.util.ExtractionCache;
+import org.wildfly.swarm.bootstrap.util.Layout;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
 
 import static org.jboss.modules.ModuleXmlParser.endOfDocument;
 import static org.jboss.modules.ModuleXmlParser.unexpectedContent;
@@ -266,7 +270,9 @@ public class MavenArtifactUtil {
 
     /**
      * First checks this class's ClassLoader for an embedded maven repository under {@code m2repo} and extracts
-     * the artifact if found.
+     * the artifact into the {@link ExtractionCache} if found.
+     * <p></p>
+     * Then checks the shared {@link ArtifactStore}, if one is configured.
      * <p></p>
      * Then tries to find a maven jar artifact from the system property "local.maven.repo.path" This property is a list of
      * platform separated directory names.  If not specified, then it looks in ${user.home}/.m2/repository by default.
@@ -308,15 +314,29 @@ public class MavenArtifactUtil {
 
         // serialize artifact lookup because we want to prevent parallel download
         synchronized (artifactLock) {
-            String artifactRelativePath = "m2repo/" + relativeArtifactPath('/', groupId, artifactId, version);
-            String jarPath = artifactRelativePath + classifier + "." + packaging;
+            String jarPath = embeddedArtifactPath(qualifier, packaging);
+
+            if (MavenArtifactUtil.class.getClassLoader().getResource(jarPath) != null) {
+                final String embeddedPath = jarPath;
+                Path extracted = ExtractionCache.getInstance().extract(
+                        Layout.getRoot(),
+                        embeddedPath,
+                        artifactId + "-" + version + classifier + "." + packaging,
+                        () -> MavenArtifactUtil.class.getClassLoader().getResourceAsStream(embeddedPath));
+                if (extracted != null) {
+                    return extracted.toFile();
+                }
+            }
 
-            InputStream stream = MavenArtifactUtil.class.getClassLoader().getResourceAsStream(jarPath);
-            if (stream != null) {
-                return copyTempJar(artifactId + "-" + version, stream, packaging);
+            ArtifactStore store = ArtifactStore.getInstance();
+            if (store != null) {
+                Path stored = store.resolve(groupId, artifactId, version, split.length >= 4 ? split[3] : null, packaging);
+                if (stored != null) {
+                    return stored.toFile();
+                }
             }
 
-            artifactRelativePath = relativeArtifactPath(groupId, artifactId, version);
+            String artifactRelativePath = relativeArtifactPath(groupId, artifactId, version);
             jarPath = artifactRelativePath + classifier + "." + packaging;
 
             Path fp = java.nio.file.Paths.get(localRepository.toString(), jarPath);
@@ -351,6 +371,28 @@ public class MavenArtifactUtil {
         }
     }
 
+    /**
+     * Location of an artifact within the embedded {@code m2repo} of a fat-jar.
+     *
+     * @param qualifier group:artifact:version[:classifier]
+     * @param packaging the artifact packaging, such as {@code jar}
+     * @return the path of the artifact relative to the root of the fat-jar
+     */
+    public static String embeddedArtifactPath(String qualifier, String packaging) {
+        if (qualifier.startsWith("${") && qualifier.endsWith("}")) {
+            qualifier = qualifier.substring(2, qualifier.length() - 1);
+        }
+        String[] split = qualifier.split(":");
+        if (split.length < 3) {
+            throw new IllegalArgumentException("Illegal artifact " + qualifier);
+        }
+        String classifier = "";
+        if (split.length >= 4) {
+            classifier = "-" + split[3];
+        }
+        return "m2repo/" + relativeArtifactPath('/', split[0], split[1], split[2]) + classifier + "." + packaging;
+    }
+
     public static String relativeArtifactPath(String groupId, String artifactId, String version) {
         return relativeArtifactPath(File.separatorChar, groupId, artifactId, version);
     }
@@ -367,7 +409,7 @@ public class MavenArtifactUtil {
 
     public static File copyTempJar(String artifact, InputStream in, String packaging) throws IOException {
         try {
-            File temp = File.createTempFile(artifact, "." + packaging);
+            File temp = TempStorage.getInstance().createTempFile(artifact, "." + packaging).toFile();
             temp.deleteOnExit();
             try (FileOutputStream out = new FileOutputStream(temp)) {
                 byte[] buf = new byte[1024];
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.modules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exposes the module dependencies of a {@link ModuleSpec}.
+ */
+public class ModuleSpecBridge {
+
+    public static List<ModuleIdentifier> getModuleDependencies(ModuleSpec spec) {
+        List<ModuleIdentifier> identifiers = new ArrayList<>();
+
+        if (spec instanceof AliasModuleSpec) {
+            identifiers.add(((AliasModuleSpec) spec).getAliasTarget());
+        } else if (spec instanceof ConcreteModuleSpec) {
+            for (DependencySpec each : ((ConcreteModuleSpec) spec).getDependencies()) {
+                if (each instanceof ModuleDependencySpec) {
+                    ModuleDependencySpec moduleDependency = (ModuleDependencySpec) each;
+                    if (moduleDependency.getModuleLoader() == null) {
+                        identifiers.add(moduleDependency.getIdentifier());
+                    }
+                }
+            }
+        }
+
+        return identifiers;
+    }
+}
@@ -27,6 +27,7 @@ import org.jboss.modules.Module;
 import org.jboss.modules.ModuleIdentifier;
 import org.wildfly.swarm.bootstrap.modules.BootModuleLoader;
 import org.wildfly.swarm.bootstrap.util.Layout;
+import org.wildfly.swarm.bootstrap.util.Timeline;
 
 /**
  * @author Bob McWhirter
@@ -48,6 +49,9 @@ public class Main {
     }
 
     public static void main(String[] args) throws Throwable {
+        Timeline.markJvmStart();
+        long bootstrapStart = Timeline.start();
+
         System.setProperty("boot.module.loader", BootModuleLoader.class.getName());
 
         String mainClassName = null;
@@ -61,10 +65,18 @@ public class Main {
             mainClassName = "org.wildfly.swarm.Swarm";
         }
 
+        if (Boolean.getBoolean(BootModuleLoader.PARALLEL_PRELOAD) && Module.getBootModuleLoader() instanceof BootModuleLoader) {
+            ((BootModuleLoader) Module.getBootModuleLoader()).preload(
+                    ModuleIdentifier.create("swarm.application"),
+                    ModuleIdentifier.create("org.wildfly.swarm.container", "runtime"));
+        }
+
         Module app = Module.getBootModuleLoader().loadModule( ModuleIdentifier.create("swarm.application" ));
 
         Class<?> mainClass = app.getClassLoader().loadClass(mainClassName);
 
+        Timeline.end("bootstrap", "Main", bootstrapStart);
+
         final Method mainMethod = mainClass.getMethod("main", String[].class);
 
         final int modifiers = mainMethod.getModifiers();
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.m2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.wildfly.swarm.bootstrap.util.Layout;
+
+/**
+ * Read-only, content-addressed store of artifacts shared by every application on a host.
+ *
+ * <p>Thin -swarm.jars carry no {@code m2repo}; their artifacts are resolved from the store
+ * located by the {@code swarm.artifact.store} property, which may be set within the jar's
+ * {@code wildfly-swarm.properties}, or the {@code SWARM_ARTIFACT_STORE} environment
+ * variable. The store is filled by extracting the base layers produced alongside thin jars
+ * into it; each artifact is stored once, whichever applications use it.</p>
+ *
+ * <p>The store holds each artifact under {@code sha1/<first two digits>/<sha1>.<packaging>},
+ * and an index mapping its coordinates to its digest, under {@code gav/} in the layout of a
+ * Maven repository with a {@code .sha1} suffix.</p>
+ *
+ * <p>As the index is shared, a rebuilt or {@code SNAPSHOT} artifact of one application may
+ * replace the entry of another's. A thin jar therefore also carries its own index, as
+ * {@link #JAR_INDEX}, by which its artifacts are resolved by digest, the shared index only
+ * being used for artifacts absent from it.</p>
+ */
+public class ArtifactStore {
+
+    public static final String PROPERTY = "swarm.artifact.store";
+
+    public static final String ENV = "SWARM_ARTIFACT_STORE";
+
+    public static final String BLOBS = "sha1";
+
+    public static final String INDEX = "gav";
+
+    /**
+     * Lines of {@code <index path>=<sha1>}, for each artifact of the thin jar in the store.
+     */
+    public static final String JAR_INDEX = "META-INF/wildfly-swarm-store.index";
+
+    private static ArtifactStore INSTANCE;
+
+    private static boolean LOCATED;
+
+    private final Path root;
+
+    private final Map<String, String> pinned;
+
+    public ArtifactStore(Path root) {
+        this(root, Collections.emptyMap());
+    }
+
+    /**
+     * @param pinned the digest of each artifact, by its index path, as read by {@link #readIndex(InputStream)}
+     */
+    public ArtifactStore(Path root, Map<String, String> pinned) {
+        this.root = root;
+        this.pinned = pinned;
+    }
+
+    /**
+     * @return the configured store, or {@code null} if none is configured or it does not exist.
+     */
+    public synchronized static ArtifactStore getInstance() {
+        if (!LOCATED) {
+            LOCATED = true;
+            try {
+                Layout.loadProperties();
+            } catch (IOException e) {
+                // not running from a jar
+            }
+            String location = System.getProperty(PROPERTY);
+            if (location == null || location.trim().isEmpty()) {
+                location = System.getenv(ENV);
+            }
+            if (location != null && !location.trim().isEmpty()) {
+                Path root = Paths.get(location.trim());
+                if (Files.isDirectory(root)) {
+                    try {
+                        INSTANCE = new ArtifactStore(root, readIndex(ClassLoader.getSystemClassLoader().getResourceAsStream(JAR_INDEX)));
+                    } catch (IOException e) {
+                        System.err.println("[WARN] unable to read " + JAR_INDEX + ": " + e);
+                        INSTANCE = new ArtifactStore(root);
+                    }
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @param classifier the classifier, or {@code null}
+     * @return the stored artifact, or {@code null} if absent.
+     */
+    public Path resolve(String groupId, String artifactId, String version, String classifier, String packaging) throws IOException {
+        String indexPath = indexPath(groupId, artifactId, version, classifier, packaging);
+        String sha1 = this.pinned.get(indexPath);
+        if (sha1 == null) {
+            Path index = this.root.resolve(indexPath);
+            if (Files.notExists(index)) {
+                return null;
+            }
+            sha1 = new String(Files.readAllBytes(index), StandardCharsets.US_ASCII).trim();
+        }
+        if (sha1.length() < 3) {
+            return null;
+        }
+        Path blob = this.root.resolve(blobPath(sha1, packaging));
+        if (Files.notExists(blob)) {
+            return null;
+        }
+        return blob;
+    }
+
+    /**
+     * @return the path of the artifact with the given coordinates, relative to the root of the store.
+     */
+    public static String indexPath(String groupId, String artifactId, String version, String classifier, String packaging) {
+        StringBuilder path = new StringBuilder(INDEX).append('/');
+        path.append(groupId.replace('.', '/')).append('/');
+        path.append(artifactId).append('/').append(version).append('/');
+        path.append(artifactId).append('-').append(version);
+        if (classifier != null && !classifier.isEmpty()) {
+            path.append('-').append(classifier);
+        }
+        return path.append('.').append(packaging).append(".sha1").toString();
+    }
+
+    /**
+     * @return the path of the content with the given digest, relative to the root of the store.
+     */
+    public static String blobPath(String sha1, String packaging) {
+        return BLOBS + "/" + sha1.substring(0, 2) + "/" + sha1 + "." + packaging;
+    }
+
+    /**
+     * @param in the content of a {@link #JAR_INDEX}, or {@code null}
+     * @return the digest of each artifact, by its index path.
+     */
+    public static Map<String, String> readIndex(InputStream in) throws IOException {
+        if (in == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> index = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    index.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -16,9 +16,11 @@
 package org.wildfly.swarm.bootstrap.m2;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.wildfly.swarm.bootstrap.util.ExtractionCache;
+import org.wildfly.swarm.bootstrap.util.Layout;
 
 /**
  * @author Bob McWhirter
@@ -33,30 +35,19 @@ public class JarRepositoryResolver extends RepositoryResolver {
         path.append(SEPARATOR);
         path.append(gavToPath(gav));
 
-        InputStream in = this.getClass().getClassLoader().getResourceAsStream(path.toString());
-        if (in == null) {
+        final String entryPath = path.toString();
+        final ClassLoader cl = this.getClass().getClassLoader();
+
+        if (cl.getResource(entryPath) == null) {
             return null;
         }
 
-        try {
-            File tmp = File.createTempFile(gav.replace(':', '~'), ".jar");
-            tmp.deleteOnExit();
-
-            FileOutputStream out = new FileOutputStream(tmp);
-
-            try {
-                byte[] buf = new byte[1024];
-                int len = -1;
-
-                while ((len = in.read(buf)) >= 0) {
-                    out.write(buf, 0, len);
-                }
-            } finally {
-                out.close();
-            }
-            return tmp;
-        } finally {
-            in.close();
-        }
+        Path extracted = ExtractionCache.getInstance().extract(
+                Layout.getRoot(),
+                entryPath,
+                gav.replace(':', '~') + ".jar",
+                () -> cl.getResourceAsStream(entryPath));
+
+        return extracted == null ? null : extracted.toFile();
     }
 }
@@ -28,6 +28,17 @@ public class LocalRepositoryResolver extends RepositoryResolver {
     @Override
     public File resolve(String gav) throws IOException {
 
+        ArtifactStore store = ArtifactStore.getInstance();
+        if (store != null) {
+            String[] parts = gav.split(":");
+            if (parts.length >= 3) {
+                Path stored = store.resolve(parts[0], parts[1], parts[2], parts.length >= 4 ? parts[3] : null, "jar");
+                if (stored != null) {
+                    return stored.toFile();
+                }
+            }
+        }
+
         Path m2repo = findM2Repo();
         Path artifactPath = m2repo.resolve(gavToPath(gav));
 
@@ -21,11 +21,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Enumeration;
-import java.util.jar.JarFile;
 
 import org.jboss.modules.DependencySpec;
 import org.jboss.modules.MavenArtifactUtil;
@@ -34,12 +31,15 @@ import org.jboss.modules.ModuleIdentifier;
 import org.jboss.modules.ModuleLoadException;
 import org.jboss.modules.ModuleLoader;
 import org.jboss.modules.ModuleSpec;
+import org.jboss.modules.ResourceLoader;
 import org.jboss.modules.ResourceLoaderSpec;
 import org.jboss.modules.ResourceLoaders;
 import org.jboss.modules.filter.ClassFilter;
 import org.jboss.modules.filter.ClassFilters;
 import org.jboss.modules.filter.PathFilter;
 import org.jboss.modules.filter.PathFilters;
+import org.wildfly.swarm.bootstrap.util.BootIndex;
+import org.wildfly.swarm.bootstrap.util.ExtractionCache;
 import org.wildfly.swarm.bootstrap.util.Layout;
 
 /**
@@ -114,6 +114,14 @@ public class ApplicationModuleFinder implements ModuleFinder {
     }
 
     protected void gatherJarsFromJar(ModuleSpec.Builder builder) throws IOException {
+        BootIndex index = BootIndex.getInstance();
+        if (index != null) {
+            for (String each : index.getApplicationEntries()) {
+                addApplicationEntry(builder, each);
+            }
+            return;
+        }
+
         InputStream bootstrapTxt = getClass().getClassLoader().getResourceAsStream("META-INF/wildfly-swarm-application.conf");
 
         if (bootstrapTxt != null) {
@@ -123,61 +131,68 @@ public class ApplicationModuleFinder implements ModuleFinder {
                 while ((line = in.readLine()) != null) {
                     line = line.trim();
                     if (!line.isEmpty()) {
-                        if (line.startsWith("module:")) {
-                            line = line.substring(7);
-                            //public static DependencySpec createModuleDependencySpec(final PathFilter importFilter, final PathFilter exportFilter, final PathFilter resourceImportFilter, final PathFilter resourceExportFilter, final ClassFilter classImportFilter, final ClassFilter classExportFilter, final ModuleLoader moduleLoader, final ModuleIdentifier identifier, final boolean optional) {
-                            builder.addDependency(
-                                    DependencySpec.createModuleDependencySpec(
-                                            PathFilters.acceptAll(),
-                                            PathFilters.acceptAll(),
-                                            PathFilters.acceptAll(),
-                                            PathFilters.acceptAll(),
-                                            ClassFilters.acceptAll(),
-                                            ClassFilters.acceptAll(),
-                                            null,
-                                            ModuleIdentifier.create(line), false));
-                        } else if (line.startsWith("gav:")) {
-                            line = line.substring(4).trim();
-                            File artifact = MavenArtifactUtil.resolveJarArtifact(line);
-                            if (artifact == null) {
-                                throw new IOException("Unable to locate artifact: " + line);
-                            }
-                            builder.addResourceRoot(
-                                    ResourceLoaderSpec.createResourceLoaderSpec(
-                                            ResourceLoaders.createJarResourceLoader(artifact.getName(), new JarFile(artifact))
-                                    )
-                            );
-                        } else if (line.startsWith("path:")) {
-                            line = line.substring(5).trim();
-
-                            int slashLoc = line.lastIndexOf('/');
-                            String name = line;
-
-                            if (slashLoc > 0) {
-                                name = line.substring(slashLoc + 1);
-                            }
+                        addApplicationEntry(builder, line);
+                    }
+                }
+            }
+        }
+    }
 
-                            String ext = ".jar";
-                            int dotLoc = name.lastIndexOf('.');
-                            if (dotLoc > 0) {
-                                ext = name.substring(dotLoc);
-                                name = name.substring(0, dotLoc);
-                            }
+    protected void addApplicationEntry(ModuleSpec.Builder builder, String line) throws IOException {
+        if (line.startsWith("module:")) {
+            line = line.substring(7);
+            //public static DependencySpec createModuleDependencySpec(final PathFilter importFilter, final PathFilter exportFilter, final PathFilter resourceImportFilter, final PathFilter resourceExportFilter, final ClassFilter classImportFilter, final ClassFilter classExportFilter, final ModuleLoader moduleLoader, final ModuleIdentifier identifier, final boolean optional) {
+            builder.addDependency(
+                    DependencySpec.createModuleDependencySpec(
+                            PathFilters.acceptAll(),
+                            PathFilters.acceptAll(),
+                            PathFilters.acceptAll(),
+                            PathFilters.acceptAll(),
+                            ClassFilters.acceptAll(),
+                            ClassFilters.acceptAll(),
+                            null,
+                            ModuleIdentifier.create(line), false));
+        } else if (line.startsWith("gav:")) {
+            line = line.substring(4).trim();
+            ResourceLoader loader = NestedJarResourceLoader.create(MavenArtifactUtil.embeddedArtifactPath(line, "jar"));
+            if (loader == null) {
+                File artifact = MavenArtifactUtil.resolveJarArtifact(line);
+                if (artifact == null) {
+                    throw new IOException("Unable to locate artifact: " + line);
+                }
+                loader = ResourceLoaders.createJarResourceLoader(artifact.getName(), Layout.openJar(artifact));
+            }
+            builder.addResourceRoot(ResourceLoaderSpec.createResourceLoaderSpec(loader));
+        } else if (line.startsWith("path:")) {
+            line = line.substring(5).trim();
+
+            ResourceLoader loader = NestedJarResourceLoader.create(line);
+            if (loader != null) {
+                builder.addResourceRoot(ResourceLoaderSpec.createResourceLoaderSpec(loader));
+                return;
+            }
 
-                            Path tmp = Files.createTempFile(name, ext);
+            int slashLoc = line.lastIndexOf('/');
+            String name = line;
 
-                            try (InputStream artifactIn = getClass().getClassLoader().getResourceAsStream(line)) {
-                                Files.copy(artifactIn, tmp, StandardCopyOption.REPLACE_EXISTING);
-                            }
-                            builder.addResourceRoot(
-                                    ResourceLoaderSpec.createResourceLoaderSpec(
-                                            ResourceLoaders.createJarResourceLoader(tmp.getFileName().toString(), new JarFile(tmp.toFile()))
-                                    )
-                            );
-                        }
-                    }
-                }
+            if (slashLoc > 0) {
+                name = line.substring(slashLoc + 1);
+            }
+
+            final String entryPath = line;
+            Path tmp = ExtractionCache.getInstance().extract(
+                    Layout.getRoot(),
+                    entryPath,
+                    name,
+                    () -> getClass().getClassLoader().getResourceAsStream(entryPath));
+            if (tmp == null) {
+                throw new IOException("Unable to locate artifact: " + line);
             }
+            builder.addResourceRoot(
+                    ResourceLoaderSpec.createResourceLoaderSpec(
+                            ResourceLoaders.createJarResourceLoader(tmp.getFileName().toString(), Layout.openJar(tmp.toFile()))
+                    )
+            );
         }
     }
 }
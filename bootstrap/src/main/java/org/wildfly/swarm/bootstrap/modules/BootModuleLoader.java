@@ -16,15 +16,37 @@
 package org.wildfly.swarm.bootstrap.modules;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.jboss.modules.ModuleFinder;
+import org.jboss.modules.ModuleIdentifier;
+import org.jboss.modules.ModuleLoadException;
 import org.jboss.modules.ModuleLoader;
+import org.jboss.modules.ModuleSpec;
+import org.jboss.modules.ModuleSpecBridge;
+import org.wildfly.swarm.bootstrap.util.Layout;
+import org.wildfly.swarm.bootstrap.util.Timeline;
 
 /**
  * @author Bob McWhirter
  */
 public class BootModuleLoader extends ModuleLoader {
 
+    /**
+     * System property which enables the parallel {@link #preload(ModuleIdentifier...)} phase.
+     */
+    public static final String PARALLEL_PRELOAD = "swarm.bootstrap.parallel";
+
+    private final Map<ModuleIdentifier, ModuleSpec> preloadedSpecs = new ConcurrentHashMap<>();
+
+    private volatile boolean preloading;
+
     public BootModuleLoader() throws IOException {
         super(new ModuleFinder[]{
                 new BootstrapClasspathModuleFinder(),
@@ -33,4 +55,102 @@ public class BootModuleLoader extends ModuleLoader {
                 new ApplicationModuleFinder(),
         });
     }
+
+    @Override
+    protected ModuleSpec findModule(ModuleIdentifier identifier) throws ModuleLoadException {
+        long start = Timeline.start();
+        ModuleSpec spec = super.findModule(identifier);
+        Timeline.end("modules", identifier.toString(), start);
+        if (this.preloading && spec != null) {
+            this.preloadedSpecs.put(identifier, spec);
+        }
+        return spec;
+    }
+
+    /**
+     * Load the given modules and everything they depend upon using a fork-join pool,
+     * so that descriptors are parsed and resource roots opened across all cores
+     * before the application starts asking for classes.
+     *
+     * <p>Modules are only defined by the workers, which does not link them; linking walks
+     * the whole dependency graph, so it is done once, for each root, after the workers have
+     * finished.</p>
+     *
+     * <p>Failures are ignored here; they surface again when the module is loaded for real.</p>
+     *
+     * @param roots the modules to start from
+     */
+    public void preload(ModuleIdentifier... roots) throws IOException, ModuleLoadException {
+        // resolve shared state up-front, so that workers never contend on it while loading
+        Layout.isFatJar();
+        Layout.getBootstrapClassLoader();
+
+        Set<ModuleIdentifier> seen = ConcurrentHashMap.newKeySet();
+        List<PreloadTask> tasks = new ArrayList<>();
+        for (ModuleIdentifier each : roots) {
+            if (seen.add(each)) {
+                tasks.add(new PreloadTask(each, seen));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.preloading = true;
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            this.preloading = false;
+            this.preloadedSpecs.clear();
+            pool.shutdown();
+        }
+
+        for (ModuleIdentifier each : roots) {
+            try {
+                loadModule(each);
+            } catch (ModuleLoadException e) {
+                // reported again when the module is loaded for real
+            }
+        }
+    }
+
+    private class PreloadTask extends RecursiveAction {
+
+        private final ModuleIdentifier identifier;
+
+        private final Set<ModuleIdentifier> seen;
+
+        PreloadTask(ModuleIdentifier identifier, Set<ModuleIdentifier> seen) {
+            this.identifier = identifier;
+            this.seen = seen;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                // defines the module without linking it, which would walk its dependencies on this thread
+                if (preloadModule(this.identifier) == null) {
+                    return;
+                }
+            } catch (ModuleLoadException e) {
+                return;
+            }
+
+            ModuleSpec spec = preloadedSpecs.remove(this.identifier);
+            if (spec == null) {
+                return;
+            }
+
+            List<PreloadTask> dependencies = new ArrayList<>();
+            for (ModuleIdentifier each : ModuleSpecBridge.getModuleDependencies(spec)) {
+                if (this.seen.add(each)) {
+                    dependencies.add(new PreloadTask(each, this.seen));
+                }
+            }
+            invokeAll(dependencies);
+        }
+    }
 }
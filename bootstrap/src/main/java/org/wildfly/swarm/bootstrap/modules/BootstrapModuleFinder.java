@@ -16,6 +16,7 @@
 package org.wildfly.swarm.bootstrap.modules;
 
 import org.jboss.modules.*;
+import org.wildfly.swarm.bootstrap.util.BootIndex;
 import org.wildfly.swarm.bootstrap.util.Layout;
 
 import java.io.*;
@@ -23,18 +24,27 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.JarFile;
 
 /**
- * Module-finder used only for loading the first set of jars when run in an fat-jar scenario.
+ * Module-finder used only for loading the first set of jars when run in an fat-jar scenario,
+ * or else exposing the bootstrap classes already on the classpath.
  *
  * @author Bob McWhirter
  */
 public class BootstrapModuleFinder implements ModuleFinder {
+
+    private static final Set<String> BOOTSTRAP_PATHS = new HashSet<>(Arrays.asList(
+            "org/wildfly/swarm/bootstrap",
+            "org/wildfly/swarm/bootstrap/m2",
+            "org/wildfly/swarm/bootstrap/modules",
+            "org/wildfly/swarm/bootstrap/util"
+    ));
+
     @Override
     public ModuleSpec findModule(ModuleIdentifier identifier, ModuleLoader delegateLoader) throws ModuleLoadException {
 
@@ -47,6 +57,10 @@ public class BootstrapModuleFinder implements ModuleFinder {
         try {
             if (Layout.isFatJar()) {
                 gatherJarsFromJar(builder);
+            } else {
+                // run from a classpath, such as a test: share the copy already loaded
+                builder.addDependency(DependencySpec.createClassLoaderDependencySpec(
+                        BootstrapModuleFinder.class.getClassLoader(), BOOTSTRAP_PATHS, true));
             }
         } catch (IOException e) {
             throw new ModuleLoadException(e);
@@ -62,6 +76,16 @@ public class BootstrapModuleFinder implements ModuleFinder {
     }
 
     protected void gatherJarsFromJar(ModuleSpec.Builder builder) throws IOException {
+        BootIndex index = BootIndex.getInstance();
+        if (index != null) {
+            for (String each : index.getBootstrapArtifacts()) {
+                builder.addResourceRoot(
+                        ResourceLoaderSpec.createResourceLoaderSpec(createArtifactLoader(each))
+                );
+            }
+            return;
+        }
+
         InputStream bootstrapTxt = getClass().getClassLoader().getResourceAsStream("META-INF/wildfly-swarm-bootstrap.conf");
 
         if (bootstrapTxt != null) {
@@ -71,18 +95,25 @@ public class BootstrapModuleFinder implements ModuleFinder {
                 while ((line = in.readLine()) != null) {
                     line = line.trim();
                     if (!line.isEmpty()) {
-                        File artifact = MavenArtifactUtil.resolveJarArtifact(line);
-                        if (artifact == null) {
-                            throw new IOException("Unable to locate artifact: " + line);
-                        }
                         builder.addResourceRoot(
-                                ResourceLoaderSpec.createResourceLoaderSpec(
-                                        ResourceLoaders.createJarResourceLoader(artifact.getName(), new JarFile(artifact))
-                                )
+                                ResourceLoaderSpec.createResourceLoaderSpec(createArtifactLoader(line))
                         );
                     }
                 }
             }
         }
     }
+
+    protected ResourceLoader createArtifactLoader(String gav) throws IOException {
+        ResourceLoader loader = NestedJarResourceLoader.create(MavenArtifactUtil.embeddedArtifactPath(gav, "jar"));
+        if (loader != null) {
+            return loader;
+        }
+
+        File artifact = MavenArtifactUtil.resolveJarArtifact(gav);
+        if (artifact == null) {
+            throw new IOException("Unable to locate artifact: " + gav);
+        }
+        return ResourceLoaders.createJarResourceLoader(artifact.getName(), Layout.openJar(artifact));
+    }
 }
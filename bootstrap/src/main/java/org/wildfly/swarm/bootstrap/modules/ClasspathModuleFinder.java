@@ -15,6 +15,7 @@
  */
 package org.wildfly.swarm.bootstrap.modules;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -26,6 +27,7 @@ import org.jboss.modules.ModuleLoader;
 import org.jboss.modules.ModuleSpec;
 import org.jboss.modules.ModuleXmlParserBridge;
 import org.jboss.modules.ResourceLoader;
+import org.wildfly.swarm.bootstrap.util.BootIndex;
 import org.wildfly.swarm.bootstrap.util.Layout;
 
 /**
@@ -37,11 +39,30 @@ public class ClasspathModuleFinder implements ModuleFinder {
     public ModuleSpec findModule(ModuleIdentifier identifier, ModuleLoader delegateLoader) throws ModuleLoadException {
         final String path = "modules/" + identifier.getName().replace('.', '/') + "/" + identifier.getSlot() + "/module.xml";
 
-        ClassLoader cl = Layout.getBootstrapClassLoader();
-        InputStream in = cl.getResourceAsStream(path);
+        InputStream in = null;
 
-        if (in == null && cl != ClasspathModuleFinder.class.getClassLoader()) {
-            in = ClasspathModuleFinder.class.getClassLoader().getResourceAsStream(path);
+        BootIndex index;
+        try {
+            index = BootIndex.getInstance();
+        } catch (IOException e) {
+            throw new ModuleLoadException(e);
+        }
+
+        if (index != null) {
+            byte[] descriptor = index.getModuleDescriptor(path);
+            if (descriptor != null) {
+                in = new ByteArrayInputStream(descriptor);
+            }
+        }
+
+        // not indexed, such as a descriptor added to the archive after the index was written
+        if (in == null) {
+            ClassLoader cl = Layout.getBootstrapClassLoader();
+            in = cl.getResourceAsStream(path);
+
+            if (in == null && cl != ClasspathModuleFinder.class.getClassLoader()) {
+                in = ClasspathModuleFinder.class.getClassLoader().getResourceAsStream(path);
+            }
         }
 
         if (in == null) {
@@ -0,0 +1,250 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.modules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.jboss.modules.ClassSpec;
+import org.jboss.modules.PackageSpec;
+import org.jboss.modules.Resource;
+import org.jboss.modules.ResourceLoader;
+import org.wildfly.swarm.bootstrap.util.Layout;
+import org.wildfly.swarm.bootstrap.util.ZipArchive;
+
+/**
+ * Resource-loader for a jar nested within the fat-jar, read in place.
+ *
+ * @see ZipArchive
+ */
+public class NestedJarResourceLoader implements ResourceLoader {
+
+    private final String rootName;
+
+    private final ZipArchive archive;
+
+    private final URL rootUrl;
+
+    private final URLStreamHandler handler;
+
+    private Manifest manifest;
+
+    private boolean manifestLoaded;
+
+    NestedJarResourceLoader(String rootName, ZipArchive archive, String outerPath) throws IOException {
+        this.rootName = rootName;
+        this.archive = archive;
+        this.handler = new NestedJarURLStreamHandler();
+        this.rootUrl = new URL("jar", null, -1, Layout.getRoot().toUri().toString() + "!/" + outerPath + "!/", this.handler);
+    }
+
+    /**
+     * Create a loader for a STORED jar within the root fat-jar.
+     *
+     * @param path the path of the nested jar within the fat-jar
+     * @return the loader, or {@code null} if the jar is absent, compressed or cannot be read in place, and must be extracted instead.
+     */
+    public static NestedJarResourceLoader create(String path) throws IOException {
+        ZipArchive root = Layout.getRootArchive();
+        if (root == null) {
+            return null;
+        }
+
+        ZipArchive.Entry entry = root.getEntry(path);
+        if (entry == null) {
+            return null;
+        }
+
+        ZipArchive nested;
+        try {
+            nested = root.openNested(entry);
+        } catch (IOException e) {
+            // such as a nested ZIP64 archive, which is extracted instead
+            return null;
+        }
+        if (nested == null) {
+            return null;
+        }
+
+        String name = path;
+        int slashLoc = name.lastIndexOf('/');
+        if (slashLoc >= 0) {
+            name = name.substring(slashLoc + 1);
+        }
+
+        return new NestedJarResourceLoader(name, nested, path);
+    }
+
+    @Override
+    public String getRootName() {
+        return this.rootName;
+    }
+
+    @Override
+    public ClassSpec getClassSpec(String fileName) throws IOException {
+        ZipArchive.Entry entry = this.archive.getEntry(fileName);
+        if (entry == null) {
+            return null;
+        }
+        ClassSpec spec = new ClassSpec();
+        spec.setBytes(this.archive.getBytes(entry));
+        spec.setCodeSource(new CodeSource(this.rootUrl, (CodeSigner[]) null));
+        return spec;
+    }
+
+    @Override
+    public PackageSpec getPackageSpec(String name) throws IOException {
+        PackageSpec spec = new PackageSpec();
+        Manifest manifest = getManifest();
+        if (manifest == null) {
+            return spec;
+        }
+
+        Attributes mainAttributes = manifest.getMainAttributes();
+        Attributes entryAttributes = manifest.getAttributes(name.replace('.', '/') + "/");
+
+        spec.setSpecTitle(getAttribute(Attributes.Name.SPECIFICATION_TITLE, entryAttributes, mainAttributes));
+        spec.setSpecVersion(getAttribute(Attributes.Name.SPECIFICATION_VERSION, entryAttributes, mainAttributes));
+        spec.setSpecVendor(getAttribute(Attributes.Name.SPECIFICATION_VENDOR, entryAttributes, mainAttributes));
+        spec.setImplTitle(getAttribute(Attributes.Name.IMPLEMENTATION_TITLE, entryAttributes, mainAttributes));
+        spec.setImplVersion(getAttribute(Attributes.Name.IMPLEMENTATION_VERSION, entryAttributes, mainAttributes));
+        spec.setImplVendor(getAttribute(Attributes.Name.IMPLEMENTATION_VENDOR, entryAttributes, mainAttributes));
+        if (Boolean.parseBoolean(getAttribute(Attributes.Name.SEALED, entryAttributes, mainAttributes))) {
+            spec.setSealBase(this.rootUrl);
+        }
+        return spec;
+    }
+
+    @Override
+    public Resource getResource(String name) {
+        final String path = name.startsWith("/") ? name.substring(1) : name;
+        final ZipArchive.Entry entry = this.archive.getEntry(path);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+
+        final URL url;
+        try {
+            url = new URL("jar", null, -1, this.rootUrl.getFile() + path, this.handler);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+
+        return new Resource() {
+            @Override
+            public String getName() {
+                return path;
+            }
+
+            @Override
+            public URL getURL() {
+                return url;
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return archive.getInputStream(entry);
+            }
+
+            @Override
+            public long getSize() {
+                return entry.getSize();
+            }
+        };
+    }
+
+    @Override
+    public String getLibrary(String name) {
+        return null;
+    }
+
+    @Override
+    public Collection<String> getPaths() {
+        Set<String> paths = new HashSet<>();
+        paths.add("");
+        for (ZipArchive.Entry each : this.archive.getEntries()) {
+            String name = each.getName();
+            int slashLoc = name.lastIndexOf('/');
+            if (slashLoc <= 0) {
+                continue;
+            }
+            String path = name.substring(0, slashLoc);
+            if (path.endsWith("/")) {
+                continue;
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    private synchronized Manifest getManifest() throws IOException {
+        if (!this.manifestLoaded) {
+            ZipArchive.Entry entry = this.archive.getEntry(JarFile.MANIFEST_NAME);
+            if (entry != null) {
+                try (InputStream in = this.archive.getInputStream(entry)) {
+                    this.manifest = new Manifest(in);
+                }
+            }
+            this.manifestLoaded = true;
+        }
+        return this.manifest;
+    }
+
+    private static String getAttribute(Attributes.Name name, Attributes entryAttributes, Attributes mainAttributes) {
+        String value = (entryAttributes == null) ? null : entryAttributes.getValue(name);
+        return (value == null) ? mainAttributes.getValue(name) : value;
+    }
+
+    private class NestedJarURLStreamHandler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            String file = url.getFile();
+            String path = file.substring(file.lastIndexOf("!/") + 2);
+            final ZipArchive.Entry entry = archive.getEntry(path);
+            if (entry == null) {
+                throw new IOException("Resource not found: " + url);
+            }
+            return new URLConnection(url) {
+                @Override
+                public void connect() throws IOException {
+                    this.connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return archive.getInputStream(entry);
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    return entry.getSize();
+                }
+            };
+        }
+    }
+}
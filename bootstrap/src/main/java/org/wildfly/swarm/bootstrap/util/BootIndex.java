@@ -0,0 +1,144 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boot index written into the fat-jar at build time.
+ *
+ * <p>Holds the contents of {@code wildfly-swarm-bootstrap.conf} and
+ * {@code wildfly-swarm-application.conf}, along with every {@code module.xml}
+ * visible to the bootstrap module, so that module resolution neither
+ * re-parses the conf files nor probes classloaders for the descriptors it holds.
+ * Descriptors it lacks are still looked up on the classloaders.</p>
+ *
+ * <p>Layout, all values big-endian as written by {@code DataOutputStream}:</p>
+ * <pre>
+ *   int    magic
+ *   int    version
+ *   int    n, followed by n bootstrap artifact GAVs (UTF)
+ *   int    n, followed by n application conf lines (UTF)
+ *   int    n, followed by n module descriptors: path (UTF), int length, bytes
+ * </pre>
+ */
+public class BootIndex {
+
+    public static final String PATH = "META-INF/wildfly-swarm-boot.index";
+
+    public static final int MAGIC = 0x53574249;
+
+    public static final int VERSION = 1;
+
+    private static BootIndex INSTANCE;
+
+    private static boolean LOADED;
+
+    private final List<String> bootstrapArtifacts;
+
+    private final List<String> applicationEntries;
+
+    private final Map<String, byte[]> moduleDescriptors;
+
+    BootIndex(List<String> bootstrapArtifacts, List<String> applicationEntries, Map<String, byte[]> moduleDescriptors) {
+        this.bootstrapArtifacts = Collections.unmodifiableList(bootstrapArtifacts);
+        this.applicationEntries = Collections.unmodifiableList(applicationEntries);
+        this.moduleDescriptors = moduleDescriptors;
+    }
+
+    /**
+     * The index of the root fat-jar, read once.
+     *
+     * @return the index, or {@code null} if not running from a fat-jar built with one.
+     */
+    public synchronized static BootIndex getInstance() throws IOException {
+        if (!LOADED) {
+            ZipArchive root = Layout.getRootArchive();
+            if (root != null) {
+                ZipArchive.Entry entry = root.getEntry(PATH);
+                if (entry != null) {
+                    INSTANCE = read(root.getBytes(entry));
+                }
+            }
+            LOADED = true;
+        }
+        return INSTANCE;
+    }
+
+    public static BootIndex read(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid boot index");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported boot index version: " + version);
+            }
+
+            List<String> bootstrapArtifacts = readStrings(in);
+            List<String> applicationEntries = readStrings(in);
+
+            int numModules = in.readInt();
+            Map<String, byte[]> moduleDescriptors = new HashMap<>(numModules * 2);
+            for (int i = 0; i < numModules; ++i) {
+                String path = in.readUTF();
+                byte[] descriptor = new byte[in.readInt()];
+                in.readFully(descriptor);
+                moduleDescriptors.put(path, descriptor);
+            }
+
+            return new BootIndex(bootstrapArtifacts, applicationEntries, moduleDescriptors);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int num = in.readInt();
+        List<String> strings = new ArrayList<>(num);
+        for (int i = 0; i < num; ++i) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    /**
+     * @return the GAVs listed in {@code wildfly-swarm-bootstrap.conf}.
+     */
+    public List<String> getBootstrapArtifacts() {
+        return this.bootstrapArtifacts;
+    }
+
+    /**
+     * @return the {@code module:}, {@code gav:} and {@code path:} lines of {@code wildfly-swarm-application.conf}.
+     */
+    public List<String> getApplicationEntries() {
+        return this.applicationEntries;
+    }
+
+    /**
+     * @param path the descriptor path, such as {@code modules/org/foo/main/module.xml}
+     * @return the descriptor, or {@code null} if no such module exists within the fat-jar.
+     */
+    public byte[] getModuleDescriptor(String path) {
+        return this.moduleDescriptors.get(path);
+    }
+}
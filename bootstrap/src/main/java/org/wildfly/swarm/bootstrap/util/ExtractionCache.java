@@ -0,0 +1,267 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of artifacts extracted from a fat-jar.
+ *
+ * <p>Entries are grouped by the path of the archive they came from, then by its
+ * modification time and size, so the same jar re-uses its extracted artifacts across
+ * restarts, while a rebuilt jar gets fresh ones. Each JVM holds a shared lock on the
+ * {@code .use.lock} file of the generation it uses for as long as it runs, and the entries
+ * of earlier builds of the same jar are evicted, once no JVM holds them, when a build is
+ * first used. Writes go to a temporary file which is atomically renamed into place under
+ * a lock on the cache directory, allowing several JVMs on the same host to share one cache.</p>
+ *
+ * <p>When the application runs from a directory rather than a jar, artifacts are used
+ * in place where they exist as files, as there is nothing to extract. Other artifacts
+ * are extracted to the {@link TempStorage} of the run, as a directory has no modification
+ * time or size which changes with its content.</p>
+ *
+ * <p>The location defaults to {@code wildfly-swarm-cache} beneath {@code swarm.temp.dir},
+ * or {@code java.io.tmpdir}, and may be set using the {@code swarm.extraction.cache}
+ * system property. It is not placed on the tmpfs used by the {@code shm} and {@code memory}
+ * {@link TempStorage} strategies, which would hold it in memory and lose it on reboot.</p>
+ */
+public class ExtractionCache {
+
+    public static final String CACHE_DIR_PROPERTY = "swarm.extraction.cache";
+
+    private static final String LOCK_FILE = ".lock";
+
+    private static final String USE_LOCK_FILE = ".use.lock";
+
+    /**
+     * Generations in use by this JVM.
+     */
+    private static final Set<Path> USED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Shared locks on the generations in use, held until the JVM exits.
+     */
+    private static final List<FileLock> LOCKS = new ArrayList<>();
+
+    private static ExtractionCache INSTANCE;
+
+    private final Path dir;
+
+    public ExtractionCache(Path dir) {
+        this.dir = dir;
+    }
+
+    public synchronized static ExtractionCache getInstance() {
+        if (INSTANCE == null) {
+            String dir = System.getProperty(CACHE_DIR_PROPERTY);
+            if (dir == null) {
+                String base = System.getProperty(TempStorage.DIR_PROPERTY, System.getProperty("java.io.tmpdir"));
+                INSTANCE = new ExtractionCache(Paths.get(base, "wildfly-swarm-cache"));
+            } else {
+                INSTANCE = new ExtractionCache(Paths.get(dir));
+            }
+        }
+        return INSTANCE;
+    }
+
+    public Path getDirectory() {
+        return this.dir;
+    }
+
+    /**
+     * Locate a previously extracted artifact, extracting it if required.
+     *
+     * @param archive  the archive containing the artifact
+     * @param key      the name of the artifact within the archive, such as its GAV or path
+     * @param fileName the file name to give the extracted artifact
+     * @param source   the contents of the artifact, only opened if not already cached
+     * @return the path to the extracted artifact
+     */
+    public Path extract(Path archive, String key, String fileName, Source source) throws IOException {
+        if (archive != null && Files.isDirectory(archive)) {
+            return extractFromDirectory(archive, key, fileName, source);
+        }
+
+        Path archiveDir = this.dir.resolve(archive == null ? "none" : sha1(archive.toAbsolutePath().toString()));
+        Path generationDir = archiveDir.resolve(generation(archive));
+        Path target = generationDir.resolve(sha1(key) + "-" + fileName);
+        if (USED.contains(generationDir) && Files.exists(target)) {
+            return target;
+        }
+
+        synchronized (this) {
+            Files.createDirectories(this.dir);
+            try (FileChannel channel = FileChannel.open(this.dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+
+                if (!USED.contains(generationDir)) {
+                    Files.createDirectories(generationDir);
+                    use(generationDir);
+                    evict(archiveDir, generationDir);
+                }
+
+                if (Files.exists(target)) {
+                    return target;
+                }
+
+                Path tmp = Files.createTempFile(generationDir, fileName, ".part");
+                try {
+                    try (InputStream in = source.open()) {
+                        if (in == null) {
+                            return null;
+                        }
+                        Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+
+        return target;
+    }
+
+    private static Path extractFromDirectory(Path archive, String key, String fileName, Source source) throws IOException {
+        Path inPlace = archive.resolve(key);
+        if (Files.isRegularFile(inPlace)) {
+            return inPlace;
+        }
+
+        try (InputStream in = source.open()) {
+            if (in == null) {
+                return null;
+            }
+            Path target = TempStorage.getInstance().createTempDirectory("extracted").resolve(fileName);
+            Files.copy(in, target);
+            return target;
+        }
+    }
+
+    /**
+     * Hold a shared lock on a generation until the JVM exits, so that it is not evicted.
+     */
+    private static synchronized void use(Path generationDir) throws IOException {
+        FileChannel channel = FileChannel.open(generationDir.resolve(USE_LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, true);
+            if (lock == null) {
+                // only locked exclusively to evict it, under the cache lock we hold
+                channel.close();
+                throw new IOException("Unable to lock " + generationDir);
+            }
+            LOCKS.add(lock);
+        } catch (OverlappingFileLockException e) {
+            // already held by another copy of this class
+            channel.close();
+        }
+        USED.add(generationDir);
+    }
+
+    /**
+     * Delete the entries of earlier builds of an archive, which no JVM is using.
+     */
+    private static void evict(Path archiveDir, Path current) throws IOException {
+        try (DirectoryStream<Path> generations = Files.newDirectoryStream(archiveDir)) {
+            for (Path each : generations) {
+                if (!each.equals(current) && Files.isDirectory(each) && !isUsed(each)) {
+                    delete(each);
+                }
+            }
+        }
+    }
+
+    private static boolean isUsed(Path generationDir) {
+        Path lockFile = generationDir.resolve(USE_LOCK_FILE);
+        if (Files.notExists(lockFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            // deleted after release, but only a JVM holding the cache lock may lock it again
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String generation(Path archive) throws IOException {
+        if (archive == null || !Files.exists(archive)) {
+            return "none";
+        }
+        return sha1(Files.getLastModifiedTime(archive).toMillis() + "|" + Files.size(archive));
+    }
+
+    private static String sha1(String id) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+}
@@ -16,10 +16,8 @@
 package org.wildfly.swarm.bootstrap.util;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Paths;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -41,21 +39,6 @@ public class Extractor {
             name = path.substring(slashLoc + 1);
         }
 
-        String ext = ".jar";
-        int dotLoc = name.lastIndexOf('.');
-        if (dotLoc > 0) {
-            ext = name.substring(dotLoc);
-            name = name.substring(0, dotLoc);
-        }
-
-        Path tmp = Files.createTempFile(name, ext);
-
-        try (InputStream in = jar.getInputStream(entry)) {
-            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
-        }
-
-        //tmp.toFile().deleteOnExit();
-
-        return tmp;
+        return ExtractionCache.getInstance().extract(Paths.get(jar.getName()), path, name, () -> jar.getInputStream(entry));
     }
 }
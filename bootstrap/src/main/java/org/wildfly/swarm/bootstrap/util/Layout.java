@@ -15,6 +15,9 @@
  */
 package org.wildfly.swarm.bootstrap.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
@@ -24,79 +27,178 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Enumeration;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
 
 import org.jboss.modules.Module;
 import org.jboss.modules.ModuleIdentifier;
 import org.jboss.modules.ModuleLoadException;
 
 /**
+ * Boot-time view of the root archive.
+ *
+ * <p>The root jar is opened and mapped once; whether it is a fat-jar, its
+ * manifest and its {@code wildfly-swarm.properties} are determined on first
+ * use and shared by every module finder afterwards. A jar which cannot be
+ * mapped, such as a ZIP64 archive or one over 2GB, is read through a
+ * {@link JarFile} instead, and its nested jars are extracted.</p>
+ *
  * @author Bob McWhirter
  */
 public class Layout {
 
+    private static final String PROPERTIES_PATH = "META-INF/wildfly-swarm.properties";
+
+    private static final AtomicInteger JAR_OPENS = new AtomicInteger();
+
     private static ClassLoader BOOTSTRAP_CLASSLOADER = null;
 
-    public static boolean isFatJar() throws IOException {
-        Path root = getRoot();
+    private static ZipArchive ROOT_ARCHIVE = null;
 
-        if (Files.isRegularFile(root)) {
-            try (JarFile jar = new JarFile(root.toFile())) {
-                ZipEntry propsEntry = jar.getEntry("META-INF/wildfly-swarm.properties");
-                if (propsEntry != null) {
-                    try (InputStream in = jar.getInputStream(propsEntry)) {
-                        Properties props = new Properties();
-                        props.load(in);
-                        if (props.containsKey("wildfly.swarm.app.artifact")) {
-                            System.setProperty("wildfly.swarm.app.artifact", props.getProperty("wildfly.swarm.app.artifact"));
-                        }
+    private static boolean ROOT_ARCHIVE_OPENED = false;
+
+    private static Path ROOT = null;
+
+    private static Boolean FAT_JAR = null;
+
+    private static Manifest MANIFEST = null;
 
-                        Enumeration<String> names = (Enumeration<String>) props.propertyNames();
-                        while ( names.hasMoreElements() ) {
-                            String name = names.nextElement();
-                            String value = props.getProperty(name);
-                            if ( System.getProperty( name ) == null ) {
-                                System.setProperty(name, value);
-                            }
+    public synchronized static boolean isFatJar() throws IOException {
+        return loadProperties();
+    }
+
+    /**
+     * Apply the root jar's {@code wildfly-swarm.properties} as system properties, unless already set.
+     * They are only read once.
+     *
+     * @return whether the root is a fat-jar, having those properties.
+     */
+    public synchronized static boolean loadProperties() throws IOException {
+        if (FAT_JAR == null) {
+            FAT_JAR = false;
+
+            try (InputStream in = openRootEntry(PROPERTIES_PATH)) {
+                if (in != null) {
+                    Properties props = new Properties();
+                    props.load(in);
+                    if (props.containsKey("wildfly.swarm.app.artifact")) {
+                        System.setProperty("wildfly.swarm.app.artifact", props.getProperty("wildfly.swarm.app.artifact"));
+                    }
+
+                    Enumeration<String> names = (Enumeration<String>) props.propertyNames();
+                    while ( names.hasMoreElements() ) {
+                        String name = names.nextElement();
+                        String value = props.getProperty(name);
+                        if ( System.getProperty( name ) == null ) {
+                            System.setProperty(name, value);
                         }
                     }
-                    return true;
+                    FAT_JAR = true;
                 }
             }
         }
 
-        return false;
+        return FAT_JAR;
     }
 
 
-    public static Path getRoot() throws IOException {
-        URL location = Layout.class.getProtectionDomain().getCodeSource().getLocation();
-        if (location.getProtocol().equals("file")) {
+    public synchronized static Path getRoot() throws IOException {
+        if (ROOT == null) {
+            URL location = Layout.class.getProtectionDomain().getCodeSource().getLocation();
+            if (!location.getProtocol().equals("file")) {
+                throw new IOException("Unable to determine root");
+            }
             try {
-                return Paths.get(location.toURI());
+                ROOT = Paths.get(location.toURI());
             } catch (URISyntaxException e) {
                 throw new IOException(e);
             }
         }
 
-        throw new IOException("Unable to determine root");
+        return ROOT;
     }
 
-    public static Manifest getManifest() throws IOException {
+    public synchronized static Manifest getManifest() throws IOException {
+        if (MANIFEST == null && isFatJar()) {
+            try (InputStream in = openRootEntry(JarFile.MANIFEST_NAME)) {
+                if (in != null) {
+                    MANIFEST = new Manifest(in);
+                }
+            }
+        }
+
+        return MANIFEST;
+    }
+
+    /**
+     * The root fat-jar, memory-mapped once and shared by every nested-jar resource loader.
+     *
+     * @return the mapped archive, or {@code null} if not running from a jar, or from one which cannot be mapped.
+     */
+    public synchronized static ZipArchive getRootArchive() throws IOException {
+        if (!ROOT_ARCHIVE_OPENED) {
+            ROOT_ARCHIVE_OPENED = true;
+            Path root = getRoot();
+            if (Files.isRegularFile(root)) {
+                JAR_OPENS.incrementAndGet();
+                try {
+                    ROOT_ARCHIVE = ZipArchive.open(root);
+                } catch (IOException e) {
+                    System.err.println("[WARN] unable to map " + root + ", extracting nested jars instead: " + e.getMessage());
+                }
+            }
+        }
+        return ROOT_ARCHIVE;
+    }
+
+    /**
+     * Open an entry of the root jar, through its mapping if possible.
+     *
+     * @return the entry's contents, or {@code null} if absent or not running from a jar.
+     */
+    private static InputStream openRootEntry(String name) throws IOException {
+        ZipArchive archive = getRootArchive();
+        if (archive != null) {
+            ZipArchive.Entry entry = archive.getEntry(name);
+            return entry == null ? null : archive.getInputStream(entry);
+        }
+
         Path root = getRoot();
-        if (isFatJar()) {
-            try (JarFile jar = new JarFile(root.toFile())) {
-                ZipEntry entry = jar.getEntry("META-INF/MANIFEST.MF");
-                if (entry != null) {
-                    InputStream in = jar.getInputStream(entry);
-                    return new Manifest(in);
+        if (!Files.isRegularFile(root)) {
+            return null;
+        }
+        try (JarFile jar = openJar(root.toFile())) {
+            JarEntry entry = jar.getJarEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = jar.getInputStream(entry)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) >= 0) {
+                    bytes.write(buf, 0, len);
                 }
+                return new ByteArrayInputStream(bytes.toByteArray());
             }
         }
+    }
+
+    /**
+     * Open a jar which could not be loaded in place, counting it towards {@link #getJarOpenCount()}.
+     */
+    public static JarFile openJar(File file) throws IOException {
+        JAR_OPENS.incrementAndGet();
+        return new JarFile(file);
+    }
 
-        return null;
+    /**
+     * @return the number of jars opened from disk by the bootstrap so far.
+     */
+    public static int getJarOpenCount() {
+        return JAR_OPENS.get();
     }
 
     public synchronized static ClassLoader getBootstrapClassLoader() throws ModuleLoadException {
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+/**
+ * System properties and resources by which the packaging tooling hands its results to the runtime.
+ */
+public final class PackagingProperties {
+
+    /**
+     * Set by the packaging tooling while recording the class-list for a shared archive.
+     */
+    public static final String CDS_TRAINING = "swarm.cds.training";
+
+    /**
+     * Set by the packaging tooling to the file to which to write the boot operations, instead of starting.
+     */
+    public static final String BOOT_PLAN_COMPILE = "swarm.boot.plan.compile";
+
+    /**
+     * The compiled boot operations, within the jar.
+     */
+    public static final String BOOT_PLAN_PATH = "META-INF/wildfly-swarm-boot.dmr";
+
+    private PackagingProperties() {
+    }
+}
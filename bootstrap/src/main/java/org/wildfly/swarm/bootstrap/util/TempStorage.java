@@ -0,0 +1,399 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where temporary files are stored: the server's temporary directory, deployment
+ * content, extracted and downloaded artifacts.
+ *
+ * <p>Selected using the {@code swarm.temp.storage} system property:</p>
+ * <ul>
+ *   <li>{@code tmpdir}, the default, beneath {@code java.io.tmpdir};</li>
+ *   <li>{@code shm}, beneath the {@code /dev/shm} tmpfs, if present;</li>
+ *   <li>{@code memory}, as {@code shm} until {@code swarm.temp.memory.limit} bytes
+ *   (by default 64MiB) are in use, then as {@code tmpdir}, which suits small deployments;</li>
+ *   <li>the name of a subclass with a no-argument constructor.</li>
+ * </ul>
+ *
+ * <p>Setting {@code swarm.temp.dir} stores beneath that directory instead, which is
+ * then re-used by each run.</p>
+ *
+ * <p>Each run stores its files in its own {@code wildfly-swarm-*} directory, locked
+ * through its {@code .run.lock} file for as long as the JVM is running. Directories
+ * left by earlier runs which are no longer locked, such as after a crash, are deleted
+ * when the storage is first used; other directories, such as the {@link ExtractionCache},
+ * are left alone.</p>
+ *
+ * <p>With an overflow location, the bytes in use are counted as each file or directory
+ * is created, by measuring those created before it, rather than by walking the whole
+ * run directory each time.</p>
+ */
+public class TempStorage {
+
+    public static final String PROPERTY = "swarm.temp.storage";
+
+    public static final String DIR_PROPERTY = "swarm.temp.dir";
+
+    public static final String MEMORY_LIMIT_PROPERTY = "swarm.temp.memory.limit";
+
+    /**
+     * Shared by each copy of this class loaded into the JVM, so that all use the same run directory.
+     */
+    public static final String RUN_PROPERTY = "swarm.temp.run";
+
+    private static final String PREFIX = "wildfly-swarm-";
+
+    private static final String LOCK_FILE = ".run.lock";
+
+    private static final Path SHM = Paths.get("/dev/shm");
+
+    private static TempStorage INSTANCE;
+
+    /**
+     * Held until the JVM exits.
+     */
+    private static final Map<Path, FileLock> LOCKS = new HashMap<>();
+
+    private final String name;
+
+    private final Path base;
+
+    private final Path overflow;
+
+    private final long limit;
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final AtomicLong cleaned = new AtomicLong();
+
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * Created beneath the run directory, but not yet counted in {@link #used}.
+     */
+    private final Queue<Path> unmeasured = new ConcurrentLinkedQueue<>();
+
+    private final Map<Path, Long> measured = new ConcurrentHashMap<>();
+
+    private Path run;
+
+    private Path overflowRun;
+
+    protected TempStorage(String name, Path base) {
+        this(name, base, null, 0);
+    }
+
+    /**
+     * @param overflow where to store once more than {@code limit} bytes are in use beneath {@code base}, if anywhere.
+     */
+    protected TempStorage(String name, Path base, Path overflow, long limit) {
+        this.name = name;
+        this.base = base;
+        this.overflow = overflow;
+        this.limit = limit;
+    }
+
+    public synchronized static TempStorage getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = create(System.getProperty(PROPERTY, "tmpdir"));
+        }
+        return INSTANCE;
+    }
+
+    private static TempStorage create(String strategy) {
+        Path tmpdir = Paths.get(System.getProperty("java.io.tmpdir"));
+        String dir = System.getProperty(DIR_PROPERTY);
+        if (dir != null) {
+            tmpdir = Paths.get(dir);
+        }
+
+        switch (strategy) {
+            case "tmpdir":
+                return new TempStorage(strategy, tmpdir);
+            case "shm":
+                if (!Files.isDirectory(SHM)) {
+                    System.err.println("[WARN] " + SHM + " not available, using " + tmpdir);
+                    return new TempStorage("tmpdir", tmpdir);
+                }
+                return new TempStorage(strategy, SHM);
+            case "memory":
+                if (!Files.isDirectory(SHM)) {
+                    System.err.println("[WARN] " + SHM + " not available, using " + tmpdir);
+                    return new TempStorage("tmpdir", tmpdir);
+                }
+                return new TempStorage(strategy, SHM, tmpdir, Long.getLong(MEMORY_LIMIT_PROPERTY, 64L * 1024 * 1024));
+            default:
+                try {
+                    return (TempStorage) Class.forName(strategy, true, TempStorage.class.getClassLoader())
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("Unknown temporary storage: " + strategy, e);
+                }
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the directory beneath which each run stores its files.
+     */
+    public Path getBaseDirectory() {
+        return this.base;
+    }
+
+    /**
+     * @return the directory of this run, created and locked on first use.
+     */
+    public synchronized Path getRunDirectory() throws IOException {
+        if (this.run == null) {
+            this.run = runDirectory(this.base);
+        }
+        return this.run;
+    }
+
+    /**
+     * Create a new directory, beneath the run directory of the overflow location if the limit has been reached.
+     */
+    public Path createTempDirectory(String prefix) throws IOException {
+        Path run = currentRunDirectory();
+        return created(run, Files.createTempDirectory(run, prefix));
+    }
+
+    public Path createTempFile(String prefix, String suffix) throws IOException {
+        Path run = currentRunDirectory();
+        return created(run, Files.createTempFile(run, prefix, suffix));
+    }
+
+    private Path created(Path run, Path path) {
+        this.created.incrementAndGet();
+        if (this.overflow != null && run.equals(this.run)) {
+            this.unmeasured.add(path);
+        }
+        return path;
+    }
+
+    /**
+     * Delete a temporary file or directory created through this storage.
+     */
+    public void release(Path path) throws IOException {
+        if (Files.exists(path)) {
+            delete(path);
+        }
+        this.unmeasured.remove(path);
+        Long size = this.measured.remove(path);
+        if (size != null) {
+            this.used.addAndGet(-size);
+        }
+    }
+
+    private Path currentRunDirectory() throws IOException {
+        Path run = getRunDirectory();
+        if (this.overflow == null) {
+            return run;
+        }
+        // files are written after being created, so each is measured once the next is requested
+        Path each;
+        while ((each = this.unmeasured.poll()) != null) {
+            long size = usage(each);
+            this.measured.put(each, size);
+            this.used.addAndGet(size);
+        }
+        if (this.used.get() < this.limit) {
+            return run;
+        }
+        synchronized (this) {
+            if (this.overflowRun == null) {
+                this.overflowRun = runDirectory(this.overflow);
+            }
+            return this.overflowRun;
+        }
+    }
+
+    /**
+     * @return the number of bytes stored by this run.
+     */
+    public long getUsage() {
+        Path run;
+        Path overflowRun;
+        synchronized (this) {
+            run = this.run;
+            overflowRun = this.overflowRun;
+        }
+        return usage(run) + usage(overflowRun);
+    }
+
+    /**
+     * @return the number of bytes still available where this run stores its files.
+     */
+    public long getUsableSpace() {
+        File base = this.base.toFile();
+        long space = base.getUsableSpace();
+        if (this.overflow != null) {
+            space += this.overflow.toFile().getUsableSpace();
+        }
+        return space;
+    }
+
+    /**
+     * @return the number of temporary files and directories created through this storage.
+     */
+    public int getCreatedCount() {
+        return this.created.get();
+    }
+
+    /**
+     * @return the number of bytes freed by deleting the directories of earlier runs.
+     */
+    public long getCleanedBytes() {
+        return this.cleaned.get();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " (" + this.base + (this.overflow == null ? "" : ", then " + this.overflow) + ")";
+    }
+
+    private Path runDirectory(Path base) throws IOException {
+        Files.createDirectories(base);
+
+        String id;
+        synchronized (TempStorage.class) {
+            id = System.getProperty(RUN_PROPERTY);
+            if (id == null) {
+                id = UUID.randomUUID().toString();
+                System.setProperty(RUN_PROPERTY, id);
+            }
+        }
+
+        Path run = base.resolve(PREFIX + id);
+        Files.createDirectories(run);
+        lock(run);
+        cleanStale(base, run);
+        return run;
+    }
+
+    private static synchronized void lock(Path run) throws IOException {
+        if (LOCKS.containsKey(run)) {
+            return;
+        }
+        FileChannel channel = FileChannel.open(run.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                // already held by another process
+                channel.close();
+                return;
+            }
+            LOCKS.put(run, lock);
+        } catch (OverlappingFileLockException e) {
+            // already held by another copy of this class
+            channel.close();
+        }
+    }
+
+    private void cleanStale(Path base, Path current) {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(base, PREFIX + "*")) {
+            for (Path each : dirs) {
+                if (!each.equals(current) && Files.exists(each.resolve(LOCK_FILE)) && !isLocked(each)) {
+                    long size = usage(each);
+                    delete(each);
+                    this.cleaned.addAndGet(size);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[WARN] unable to clean " + base + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isLocked(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static long usage(Path dir) {
+        if (dir == null || !Files.exists(dir)) {
+            return 0;
+        }
+        AtomicLong size = new AtomicLong();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    size.addAndGet(attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // best effort
+        }
+        return size.get();
+    }
+
+    private static void delete(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Startup timeline, covering the bootstrap, the container and deployments.
+ *
+ * <p>Enabled by setting the {@code swarm.timeline} system property. When set to
+ * a file name, the timeline is written to that file once the container has started
+ * and after each deployment, as plain JSON or, with {@code swarm.timeline.format=chrome},
+ * in the Chrome trace-event format understood by {@code chrome://tracing}. It is also
+ * published as the {@code org.wildfly.swarm:type=Timeline} MBean.</p>
+ *
+ * <p>When disabled, {@link #start()} and {@link #end(String, String, long)} only test a
+ * constant.</p>
+ *
+ * <p>Events are recorded in memory until the container has configured logging, and
+ * {@link #register() registers} the MBean: the platform MBean server starts the default
+ * {@code java.util.logging.LogManager}, which would otherwise take the place of the one
+ * the container sets. The bootstrap classes may be loaded by more than one class-loader;
+ * the copy loaded by the system class-loader is registered, and the others record through
+ * it from then on, so there is a single timeline per JVM.</p>
+ */
+public class Timeline implements TimelineMBean {
+
+    public static final String PROPERTY = "swarm.timeline";
+
+    public static final String FORMAT_PROPERTY = "swarm.timeline.format";
+
+    public static final String OBJECT_NAME = "org.wildfly.swarm:type=Timeline";
+
+    private static final boolean ENABLED = System.getProperty(PROPERTY) != null;
+
+    private static final Timeline LOCAL = new Timeline();
+
+    private static volatile TimelineMBean INSTANCE = LOCAL;
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+
+    Timeline() {
+
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return the start of an event, to be passed to {@link #end(String, String, long)}.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record an event which began at {@code start} and ends now.
+     *
+     * @param category such as {@code bootstrap}, {@code modules}, {@code container}, {@code msc} or {@code deployment}
+     * @param name     the event name
+     * @param start    as returned by {@link #start()}
+     */
+    public static void end(String category, String name, long start) {
+        if (ENABLED) {
+            INSTANCE.record(category, name, start, System.nanoTime() - start, Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Record an instantaneous event.
+     */
+    public static void mark(String category, String name) {
+        if (ENABLED) {
+            INSTANCE.record(category, name, System.nanoTime(), 0, Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Record the time from the JVM starting up until now.
+     */
+    public static void markJvmStart() {
+        if (ENABLED) {
+            long uptime = TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+            INSTANCE.record("jvm", "jvm", System.nanoTime() - uptime, uptime, Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Write the timeline to the file named by {@code swarm.timeline}, if any.
+     */
+    public static void export() throws IOException {
+        if (!ENABLED) {
+            return;
+        }
+        String file = System.getProperty(PROPERTY);
+        if (file.isEmpty() || "true".equals(file)) {
+            return;
+        }
+
+        TimelineMBean timeline = INSTANCE;
+        String content = "chrome".equals(System.getProperty(FORMAT_PROPERTY)) ? timeline.getChromeTrace() : timeline.getJson();
+
+        Path path = Paths.get(file);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        System.err.println("[INFO] startup timeline written to " + path.toAbsolutePath());
+    }
+
+    /**
+     * Publish the timeline as the {@code org.wildfly.swarm:type=Timeline} MBean.
+     *
+     * <p>Only to be called once logging has been configured.</p>
+     */
+    public static synchronized void register() {
+        if (!ENABLED || INSTANCE != LOCAL) {
+            return;
+        }
+        try {
+            Class<?> primary = ClassLoader.getSystemClassLoader().loadClass(Timeline.class.getName());
+            if (primary != Timeline.class) {
+                // the copy the bootstrap recorded into holds the timeline
+                primary.getMethod("register").invoke(null);
+            }
+        } catch (ReflectiveOperationException e) {
+            // not on the class-path
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(LOCAL, name);
+            } catch (InstanceAlreadyExistsException e) {
+                TimelineMBean shared = JMX.newMBeanProxy(server, name, TimelineMBean.class);
+                INSTANCE = shared;
+                for (Event each : LOCAL.events) {
+                    shared.record(each.category, each.name, each.start, each.duration, each.thread);
+                }
+                LOCAL.events.clear();
+            }
+        } catch (Exception e) {
+            // keep recording locally
+        }
+    }
+
+    @Override
+    public void record(String category, String name, long startNanos, long durationNanos, String thread) {
+        this.events.add(new Event(category, name, startNanos, durationNanos, thread));
+    }
+
+    @Override
+    public int getEventCount() {
+        return this.events.size();
+    }
+
+    @Override
+    public String getJson() {
+        List<Event> events = sortedEvents();
+        long origin = events.isEmpty() ? 0 : events.get(0).start;
+
+        StringBuilder json = new StringBuilder("{\"events\":[");
+        for (int i = 0; i < events.size(); ++i) {
+            Event each = events.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\n{\"category\":").append(quote(each.category))
+                    .append(",\"name\":").append(quote(each.name))
+                    .append(",\"thread\":").append(quote(each.thread))
+                    .append(",\"startMillis\":").append(millis(each.start - origin))
+                    .append(",\"durationMillis\":").append(millis(each.duration))
+                    .append('}');
+        }
+        return json.append("\n]}\n").toString();
+    }
+
+    @Override
+    public String getChromeTrace() {
+        List<Event> events = sortedEvents();
+        long origin = events.isEmpty() ? 0 : events.get(0).start;
+
+        StringBuilder json = new StringBuilder("{\"traceEvents\":[");
+        for (int i = 0; i < events.size(); ++i) {
+            Event each = events.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\n{\"cat\":").append(quote(each.category))
+                    .append(",\"name\":").append(quote(each.name))
+                    .append(",\"ph\":").append(each.duration == 0 ? "\"i\",\"s\":\"t\"" : "\"X\"")
+                    .append(",\"ts\":").append(TimeUnit.NANOSECONDS.toMicros(each.start - origin))
+                    .append(",\"dur\":").append(TimeUnit.NANOSECONDS.toMicros(each.duration))
+                    .append(",\"pid\":1,\"tid\":").append(quote(each.thread))
+                    .append('}');
+        }
+        return json.append("\n],\"displayTimeUnit\":\"ms\"}\n").toString();
+    }
+
+    private List<Event> sortedEvents() {
+        List<Event> events = new ArrayList<>(this.events);
+        events.sort(Comparator.comparingLong((Event e) -> e.start));
+        return events;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    private static String quote(String str) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static class Event {
+        private final String category;
+
+        private final String name;
+
+        private final long start;
+
+        private final long duration;
+
+        private final String thread;
+
+        Event(String category, String name, long start, long duration, String thread) {
+            this.category = category;
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+            this.thread = thread;
+        }
+    }
+}
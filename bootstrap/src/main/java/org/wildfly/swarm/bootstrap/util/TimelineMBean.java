@@ -0,0 +1,30 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+/**
+ * Management interface of the startup {@link Timeline}.
+ */
+public interface TimelineMBean {
+
+    int getEventCount();
+
+    String getJson();
+
+    String getChromeTrace();
+
+    void record(String category, String name, long startNanos, long durationNanos, String thread);
+}
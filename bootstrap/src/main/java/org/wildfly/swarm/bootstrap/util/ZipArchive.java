@@ -0,0 +1,283 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only view of a zip archive held in a {@link ByteBuffer}.
+ *
+ * <p>The outer fat-jar is memory-mapped once, and nested jars which were
+ * written {@link ZipEntry#STORED} are simply slices of that mapping, so
+ * their contents can be read in place without extracting them to disk.
+ * DEFLATED entries are only inflated when their bytes are requested.</p>
+ */
+public class ZipArchive {
+
+    private static final int EOCD_SIG = 0x06054b50;
+
+    private static final int CEN_SIG = 0x02014b50;
+
+    private static final int LOC_SIG = 0x04034b50;
+
+    private static final int EOCD_LEN = 22;
+
+    private static final int CEN_LEN = 46;
+
+    private static final int LOC_LEN = 30;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final ByteBuffer buffer;
+
+    private final Map<String, Entry> entries;
+
+    public ZipArchive(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = readCentralDirectory();
+    }
+
+    public static ZipArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Archive too large to map: " + path);
+            }
+            return new ZipArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public Entry getEntry(String name) {
+        return this.entries.get(name);
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(this.entries.values());
+    }
+
+    /**
+     * Open a STORED entry as an archive of its own, backed by the same buffer.
+     *
+     * @return the nested archive, or {@code null} if the entry is compressed.
+     */
+    public ZipArchive openNested(Entry entry) throws IOException {
+        if (!entry.isStored()) {
+            return null;
+        }
+        return new ZipArchive(getRawContent(entry));
+    }
+
+    public InputStream getInputStream(Entry entry) throws IOException {
+        return new ByteArrayInputStream(getBytes(entry));
+    }
+
+    public byte[] getBytes(Entry entry) throws IOException {
+        ByteBuffer raw = getRawContent(entry);
+        if (entry.size > Integer.MAX_VALUE) {
+            throw new IOException("Entry too large: " + entry.name);
+        }
+        byte[] bytes = new byte[(int) entry.size];
+
+        if (entry.isStored()) {
+            raw.get(bytes);
+            return bytes;
+        }
+
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+
+        byte[] compressed = new byte[raw.remaining()];
+        raw.get(compressed);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int len = 0;
+            while (len < bytes.length) {
+                int n = inflater.inflate(bytes, len, bytes.length - len);
+                if (n == 0) {
+                    if (inflater.finished() || inflater.needsDictionary() || inflater.needsInput()) {
+                        throw new EOFException("Unexpected end of entry: " + entry.name);
+                    }
+                }
+                len += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data: " + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * The bytes of an entry exactly as they are stored in the archive.
+     */
+    public ByteBuffer getRawContent(Entry entry) throws IOException {
+        int loc = entry.localHeaderOffset;
+        if (this.buffer.getInt(loc) != LOC_SIG) {
+            throw new IOException("Invalid local header for " + entry.name);
+        }
+        int start = loc + LOC_LEN + u16(loc + 26) + u16(loc + 28);
+
+        ByteBuffer content = this.buffer.duplicate();
+        content.position(start);
+        content.limit(start + (int) entry.compressedSize);
+        return content.slice();
+    }
+
+    private Map<String, Entry> readCentralDirectory() throws IOException {
+        int eocd = findEndOfCentralDirectory();
+
+        int total = u16(eocd + 10);
+        long cenSize = u32(eocd + 12);
+        long cenOffset = u32(eocd + 16);
+
+        if (total == 0xFFFF || cenSize == ZIP64_MAGIC || cenOffset == ZIP64_MAGIC) {
+            throw new IOException("ZIP64 archives are not supported");
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>(total * 2);
+
+        int pos = (int) cenOffset;
+        for (int i = 0; i < total; ++i) {
+            if (this.buffer.getInt(pos) != CEN_SIG) {
+                throw new IOException("Invalid central directory header");
+            }
+            int method = u16(pos + 10);
+            long crc = u32(pos + 16);
+            long compressedSize = u32(pos + 20);
+            long size = u32(pos + 24);
+            int nameLen = u16(pos + 28);
+            int extraLen = u16(pos + 30);
+            int commentLen = u16(pos + 32);
+            long localHeaderOffset = u32(pos + 42);
+
+            if (compressedSize == ZIP64_MAGIC || size == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+                throw new IOException("ZIP64 archives are not supported");
+            }
+
+            byte[] nameBytes = new byte[nameLen];
+            ByteBuffer name = this.buffer.duplicate();
+            name.position(pos + CEN_LEN);
+            name.get(nameBytes);
+
+            Entry entry = new Entry(new String(nameBytes, StandardCharsets.UTF_8), method, crc, compressedSize, size, (int) localHeaderOffset);
+            entries.put(entry.name, entry);
+
+            pos += CEN_LEN + nameLen + extraLen + commentLen;
+        }
+
+        return entries;
+    }
+
+    private int findEndOfCentralDirectory() throws IOException {
+        int limit = this.buffer.limit();
+        int stop = Math.max(0, limit - EOCD_LEN - 0xFFFF);
+        for (int pos = limit - EOCD_LEN; pos >= stop; --pos) {
+            if (this.buffer.getInt(pos) == EOCD_SIG) {
+                return pos;
+            }
+        }
+        throw new IOException("Not a zip archive");
+    }
+
+    private int u16(int pos) {
+        return this.buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private long u32(int pos) {
+        return this.buffer.getInt(pos) & 0xFFFFFFFFL;
+    }
+
+    public static class Entry {
+
+        private final String name;
+
+        private final int method;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final int localHeaderOffset;
+
+        Entry(String name, int method, long crc, long compressedSize, long size, int localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public int getMethod() {
+            return this.method;
+        }
+
+        public long getCrc() {
+            return this.crc;
+        }
+
+        public long getCompressedSize() {
+            return this.compressedSize;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public int getLocalHeaderOffset() {
+            return this.localHeaderOffset;
+        }
+
+        public boolean isStored() {
+            return this.method == ZipEntry.STORED;
+        }
+
+        public boolean isDirectory() {
+            return this.name.endsWith("/");
+        }
+
+        public String toString() {
+            return this.name;
+        }
+    }
+}
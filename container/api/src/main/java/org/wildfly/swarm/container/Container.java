@@ -54,6 +54,8 @@ import org.jboss.shrinkwrap.impl.base.exporter.zip.ZipExporterImpl;
 import org.jboss.shrinkwrap.impl.base.spec.JavaArchiveImpl;
 import org.jboss.shrinkwrap.impl.base.spec.WebArchiveImpl;
 import org.wildfly.swarm.bootstrap.modules.BootModuleLoader;
+import org.wildfly.swarm.bootstrap.util.Layout;
+import org.wildfly.swarm.bootstrap.util.Timeline;
 
 /**
  * A WildFly-Swarm container.
@@ -63,6 +65,8 @@ import org.wildfly.swarm.bootstrap.modules.BootModuleLoader;
  */
 public class Container {
 
+    private static Boolean FAT_JAR = null;
+
     private Map<Class<? extends Fraction>, Fraction> fractions = new ConcurrentHashMap<>();
     private Map<String, Fraction> fractionsBySimpleName = new ConcurrentHashMap<>();
 
@@ -82,6 +86,8 @@ public class Container {
 
     private Domain domain;
 
+    private final ExecutorTopology executors = new ExecutorTopology();
+
     /**
      * Command line args if any
      */
@@ -173,7 +179,9 @@ public class Container {
         if ( fraction != null ) {
             this.fractions.put(fractionRoot(fraction.getClass()), fraction);
             this.fractionsBySimpleName.put(fraction.simpleName(), fraction);
+            long start = Timeline.start();
             fraction.initialize(new InitContext());
+            Timeline.end("fractions", fraction.getClass().getName() + ".initialize", start);
         }
         return this;
     }
@@ -310,6 +318,24 @@ public class Container {
         return this;
     }
 
+    /**
+     * Obtain the thread pools of this container, to size them before starting.
+     *
+     * @return The executor topology.
+     */
+    public ExecutorTopology executors() {
+        return this.executors;
+    }
+
+    /**
+     * Obtain a non-blocking client for the management model of the started container.
+     *
+     * @return The client.
+     */
+    public ManagementClient managementClient() {
+        return this.server.getManagementClient();
+    }
+
     /**
      * Start the container with a deployment.
      * <p/>
@@ -355,6 +381,42 @@ public class Container {
         return this;
     }
 
+    /**
+     * Deploy several archives together.
+     *
+     * @param deployments The ShrinkWrap archives to deploy.
+     * @return The container.
+     * @throws Exception if an error occurs.
+     */
+    public Container deploy(List<Archive> deployments) throws Exception {
+        this.deployer.deploy(deployments);
+        return this;
+    }
+
+    /**
+     * Undeploy an archive.
+     *
+     * @param name The name of the deployment.
+     * @return The container.
+     * @throws Exception if an error occurs.
+     */
+    public Container undeploy(String name) throws Exception {
+        this.deployer.undeploy(name);
+        return this;
+    }
+
+    /**
+     * Redeploy an archive, replacing only what has changed.
+     *
+     * @param deployment The new ShrinkWrap archive.
+     * @return The container.
+     * @throws Exception if an error occurs.
+     */
+    public Container redeploy(Archive deployment) throws Exception {
+        this.deployer.redeploy(deployment);
+        return this;
+    }
+
     /**
      * Get the possibly null container main method arguments.
      *
@@ -390,6 +452,10 @@ public class Container {
         public void socketBinding(String groupName, SocketBinding binding) {
             Container.this.socketBinding(groupName, binding);
         }
+
+        public ExecutorTopology executors() {
+            return Container.this.executors;
+        }
     }
 
     public class PostInitContext extends InitContext {
@@ -496,7 +562,14 @@ public class Container {
         return "unknown";
     }
 
-    public static boolean isFatJar() throws IOException {
+    public synchronized static boolean isFatJar() throws IOException {
+        if (FAT_JAR == null) {
+            FAT_JAR = determineFatJar();
+        }
+        return FAT_JAR;
+    }
+
+    private static boolean determineFatJar() throws IOException {
         URL location = Container.class.getProtectionDomain().getCodeSource().getLocation();
         Path root = null;
         if (location.getProtocol().equals("file")) {
@@ -510,7 +583,7 @@ public class Container {
         }
 
         if (Files.isRegularFile(root)) {
-            try (JarFile jar = new JarFile(root.toFile())) {
+            try (JarFile jar = Layout.openJar(root.toFile())) {
                 ZipEntry propsEntry = jar.getEntry("META-INF/wildfly-swarm.properties");
                 if (propsEntry != null) {
                     try (InputStream in = jar.getInputStream(propsEntry)) {
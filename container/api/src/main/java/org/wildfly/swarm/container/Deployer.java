@@ -16,6 +16,7 @@
 package org.wildfly.swarm.container;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.jboss.shrinkwrap.api.Archive;
 
@@ -24,4 +25,35 @@ import org.jboss.shrinkwrap.api.Archive;
  */
 public interface Deployer {
     void deploy(Archive deployment) throws IOException;
+
+    /**
+     * Deploy several archives together, allowing them to be prepared and started concurrently.
+     *
+     * @param deployments The ShrinkWrap archives to deploy.
+     * @throws IOException if an error occurs.
+     */
+    default void deploy(List<Archive> deployments) throws IOException {
+        for (Archive each : deployments) {
+            deploy(each);
+        }
+    }
+
+    /**
+     * Undeploy a deployment, removing its content once no longer used.
+     *
+     * @param name The name of the deployment.
+     * @throws IOException if an error occurs.
+     */
+    void undeploy(String name) throws IOException;
+
+    /**
+     * Replace a deployment with a new version of the archive of the same name.
+     *
+     * <p>Only the entries which differ are replaced; the deployment is only restarted
+     * if any of those are not static resources.</p>
+     *
+     * @param deployment The new ShrinkWrap archive.
+     * @throws IOException if an error occurs.
+     */
+    void redeploy(Archive deployment) throws IOException;
 }
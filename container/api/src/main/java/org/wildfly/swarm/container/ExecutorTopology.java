@@ -0,0 +1,335 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pools of a container, sized in one place.
+ *
+ * <p>Each pool is named, and bounded by a maximum number of threads. Pools owned by
+ * a subsystem, such as the IO worker or the EJB thread-pool, are sized from here by
+ * their fraction. Pools used by the container itself are created from here on first
+ * use, with threads started on demand and retired when idle, and report their usage.</p>
+ *
+ * <p>Elastic pools stand in for virtual threads, which the JVM does not offer: a thread
+ * is started for each task until the maximum, which is large, and stopped after a few
+ * seconds idle, so blocking tasks do not queue behind each other while idle threads
+ * do not linger.</p>
+ *
+ * <p>The size of any pool may be overridden by the {@code swarm.executors.<name>}
+ * system property.</p>
+ *
+ * <pre>
+ *     container.executors()
+ *         .pool(ExecutorTopology.BLOCKING, 64)
+ *         .pool(ExecutorTopology.EJB, 4);
+ * </pre>
+ */
+public class ExecutorTopology {
+
+    /**
+     * Non-blocking IO threads of the default IO worker, by default twice the processors, as in WildFly.
+     */
+    public static final String IO = "io";
+
+    /**
+     * Blocking request processing, being the task threads of the default IO worker, by default
+     * sixteen times the processors, as in WildFly.
+     */
+    public static final String BLOCKING = "blocking";
+
+    /**
+     * The default EJB thread-pool, used by asynchronous invocations and timers.
+     */
+    public static final String EJB = "ejb";
+
+    /**
+     * The default EE managed executor service.
+     */
+    public static final String EE = "ee";
+
+    /**
+     * Metric and availability collection.
+     */
+    public static final String METRICS = "metrics";
+
+    /**
+     * Management operations, including deployments.
+     */
+    public static final String MANAGEMENT = "management";
+
+    /**
+     * Housekeeping, such as removing temporary files.
+     */
+    public static final String SCHEDULED = "scheduled";
+
+    /**
+     * Elastic pool for work which mostly blocks, such as requests waiting on a database
+     * or remote service, used instead of a worker's task threads when dispatching elastically.
+     */
+    public static final String ELASTIC = "elastic";
+
+    public static final String PROPERTY_PREFIX = "swarm.executors.";
+
+    private final Map<String, Pool> pools = new LinkedHashMap<>();
+
+    public ExecutorTopology() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        pool(IO, cores * 2);
+        pool(BLOCKING, cores * 16);
+        pool(EJB, 10);
+        pool(EE, 25);
+        pool(METRICS, 3);
+        pool(MANAGEMENT, cores);
+        pool(SCHEDULED, 1);
+        elasticPool(ELASTIC, cores * 64);
+    }
+
+    /**
+     * Define or resize a pool.
+     *
+     * @param name       The name of the pool.
+     * @param maxThreads The maximum number of threads.
+     * @return This topology.
+     */
+    public synchronized ExecutorTopology pool(String name, int maxThreads) {
+        return define(name, maxThreads, false);
+    }
+
+    /**
+     * Define or resize an elastic pool, whose threads are only kept briefly once idle.
+     *
+     * @param name       The name of the pool.
+     * @param maxThreads The maximum number of threads.
+     * @return This topology.
+     */
+    public synchronized ExecutorTopology elasticPool(String name, int maxThreads) {
+        return define(name, maxThreads, true);
+    }
+
+    private ExecutorTopology define(String name, int maxThreads, boolean elastic) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("A pool requires at least one thread: " + name);
+        }
+        Pool pool = this.pools.get(name);
+        if (pool == null || pool.isElastic() != elastic) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            this.pools.put(name, new Pool(name, maxThreads, elastic));
+        } else {
+            pool.resize(maxThreads);
+        }
+        return this;
+    }
+
+    /**
+     * @param name The name of the pool.
+     * @return The pool.
+     * @throws IllegalArgumentException if no such pool is defined.
+     */
+    public synchronized Pool get(String name) {
+        Pool pool = this.pools.get(name);
+        if (pool == null) {
+            throw new IllegalArgumentException("No such pool: " + name);
+        }
+        return pool;
+    }
+
+    /**
+     * @param name The name of the pool.
+     * @return The maximum number of threads of the pool, taking any system property into account.
+     */
+    public int maxThreads(String name) {
+        return get(name).getMaxThreads();
+    }
+
+    public synchronized Collection<Pool> pools() {
+        return Collections.unmodifiableCollection(this.pools.values());
+    }
+
+    /**
+     * Shut down every pool created by the container.
+     */
+    public synchronized void shutdown() {
+        for (Pool each : this.pools.values()) {
+            each.shutdown();
+        }
+    }
+
+    /**
+     * A named, bounded pool of threads.
+     */
+    public static class Pool {
+
+        private static final long KEEP_ALIVE_SECONDS = 60;
+
+        private static final long ELASTIC_KEEP_ALIVE_SECONDS = 5;
+
+        private final String name;
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private final boolean elastic;
+
+        private int maxThreads;
+
+        private ThreadPoolExecutor executor;
+
+        private final List<ScheduledThreadPoolExecutor> scheduled = new ArrayList<>();
+
+        Pool(String name, int maxThreads, boolean elastic) {
+            this.name = name;
+            this.maxThreads = maxThreads;
+            this.elastic = elastic;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isElastic() {
+            return this.elastic;
+        }
+
+        public synchronized int getMaxThreads() {
+            return Integer.getInteger(PROPERTY_PREFIX + this.name, this.maxThreads);
+        }
+
+        synchronized void resize(int maxThreads) {
+            this.maxThreads = maxThreads;
+            if (this.executor != null) {
+                int max = getMaxThreads();
+                if (max > this.executor.getMaximumPoolSize()) {
+                    this.executor.setMaximumPoolSize(max);
+                    this.executor.setCorePoolSize(max);
+                } else {
+                    this.executor.setCorePoolSize(max);
+                    this.executor.setMaximumPoolSize(max);
+                }
+            }
+        }
+
+        /**
+         * Obtain the executor of this pool, creating it if required.
+         *
+         * <p>Threads are only started as tasks are submitted, up to the maximum, after which
+         * tasks are queued; idle threads are stopped.</p>
+         *
+         * @return The executor.
+         */
+        public synchronized ExecutorService executor() {
+            if (this.executor == null || this.executor.isShutdown()) {
+                int max = getMaxThreads();
+                long keepAlive = this.elastic ? ELASTIC_KEEP_ALIVE_SECONDS : KEEP_ALIVE_SECONDS;
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(max, max, keepAlive, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), threadFactory());
+                executor.allowCoreThreadTimeOut(true);
+                this.executor = executor;
+            }
+            return this.executor;
+        }
+
+        /**
+         * Obtain a new scheduled executor limited to the size of this pool.
+         *
+         * <p>Scheduled executors cannot stop idle threads, so each is separate from the pool's
+         * {@link #executor()}, but is shut down with the pool.</p>
+         *
+         * @return The executor.
+         */
+        public synchronized ScheduledExecutorService scheduledExecutor() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(getMaxThreads(), threadFactory());
+            executor.setRemoveOnCancelPolicy(true);
+            this.scheduled.add(executor);
+            return executor;
+        }
+
+        /**
+         * @return The number of threads currently executing tasks.
+         */
+        public synchronized int getActiveCount() {
+            return this.executor == null ? 0 : this.executor.getActiveCount();
+        }
+
+        /**
+         * @return The number of threads currently started.
+         */
+        public synchronized int getPoolSize() {
+            return this.executor == null ? 0 : this.executor.getPoolSize();
+        }
+
+        /**
+         * @return The largest number of threads which have been started at once.
+         */
+        public synchronized int getLargestPoolSize() {
+            return this.executor == null ? 0 : this.executor.getLargestPoolSize();
+        }
+
+        /**
+         * @return The number of tasks waiting for a thread.
+         */
+        public synchronized int getQueueSize() {
+            return this.executor == null ? 0 : this.executor.getQueue().size();
+        }
+
+        /**
+         * @return The number of tasks completed.
+         */
+        public synchronized long getCompletedTaskCount() {
+            return this.executor == null ? 0 : this.executor.getCompletedTaskCount();
+        }
+
+        synchronized void shutdown() {
+            if (this.executor != null) {
+                this.executor.shutdown();
+                this.executor = null;
+            }
+            for (ScheduledThreadPoolExecutor each : this.scheduled) {
+                each.shutdown();
+            }
+            this.scheduled.clear();
+        }
+
+        private ThreadFactory threadFactory() {
+            return (runnable) -> {
+                Thread thread = new Thread(runnable, "swarm-" + this.name + "-" + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return this.name + "[" + (this.elastic ? "elastic, " : "") + "max=" + getMaxThreads() + ", active=" + getActiveCount() + ", threads=" + getPoolSize()
+                    + ", largest=" + getLargestPoolSize() + ", queued=" + getQueueSize() + ", completed=" + getCompletedTaskCount() + "]";
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking access to the management model of a started container.
+ *
+ * <p>Operations and their results are exchanged in the JSON form of the management
+ * model, so that callers need not share the container's own model classes. Operations
+ * are executed asynchronously and may be issued concurrently; read operations proceed
+ * in parallel, while the container serializes writes itself.</p>
+ */
+public interface ManagementClient {
+
+    /**
+     * Execute an operation.
+     *
+     * @param operation The operation, such as {@code {"operation":"read-resource","address":[]}}.
+     * @return The result, completed once the operation has been executed, whatever its outcome.
+     */
+    CompletableFuture<String> execute(String operation);
+
+    /**
+     * Execute several operations without waiting for each to complete before issuing the next.
+     *
+     * @param operations The operations.
+     * @return The results, in the same order as the operations.
+     */
+    default CompletableFuture<List<String>> executeAll(List<String> operations) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (String each : operations) {
+            results.add(execute(each));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                .thenApply((ignored) -> {
+                    List<String> list = new ArrayList<>();
+                    for (CompletableFuture<String> each : results) {
+                        list.add(each.join());
+                    }
+                    return list;
+                });
+    }
+
+    /**
+     * Obtain a client whose operations are executed by the given executor.
+     *
+     * @param executor The executor.
+     * @return The client.
+     */
+    ManagementClient withExecutor(Executor executor);
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.ArchivePaths;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.jboss.vfs.VirtualFile;
+import org.jboss.vfs.spi.FileSystem;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
+
+/**
+ * Read-only VFS file-system backed directly by the nodes of a ShrinkWrap {@link Archive}.
+ *
+ * <p>Assets are streamed from the archive when opened, rather than the whole archive being
+ * exported to a zip and expanded again. A physical file is only written, to the temporary
+ * directory, for those entries whose {@link VirtualFile#getPhysicalFile()} is requested.
+ * That directory is allocated from the {@link TempStorage}, and deleted when unmounted.</p>
+ *
+ * <p>The archive may be {@link #replace(Archive) replaced} while mounted. Physical files
+ * already handed out are never rewritten: those of the new archive are written to a fresh
+ * directory, and the previous one is only deleted once {@link #releaseRetired() released},
+ * after the deployment using them has stopped.</p>
+ *
+ * <p>Deployments of identical content each mount their own {@link #view(String) view}
+ * of a single file-system.</p>
+ */
+class ArchiveFileSystem implements FileSystem {
+
+    private volatile Archive<?> archive;
+
+    private final TempStorage storage;
+
+    private volatile Path tempDir;
+
+    private final List<Path> retired = new ArrayList<>();
+
+    private volatile long lastModified = System.currentTimeMillis();
+
+    private final Map<ArchivePath, Long> sizes = new ConcurrentHashMap<>();
+
+    private final Map<ArchivePath, File> files = new ConcurrentHashMap<>();
+
+    ArchiveFileSystem(Archive<?> archive, TempStorage storage) throws IOException {
+        this.archive = archive;
+        this.storage = storage;
+        this.tempDir = storage.createTempDirectory(archive.getName());
+    }
+
+    /**
+     * Serve the entries of another archive from now on.
+     *
+     * <p>Physical files are written afresh, to a new directory, as they are requested. Those of
+     * the previous archive remain in place until {@link #releaseRetired()}.</p>
+     *
+     * @param archive the new archive
+     */
+    synchronized void replace(Archive<?> archive) throws IOException {
+        Path dir = this.storage.createTempDirectory(archive.getName());
+        this.retired.add(this.tempDir);
+        this.tempDir = dir;
+        this.files.clear();
+        this.sizes.clear();
+        this.archive = archive;
+        this.lastModified = System.currentTimeMillis();
+    }
+
+    /**
+     * Delete the physical files of archives which have since been replaced.
+     */
+    synchronized void releaseRetired() throws IOException {
+        for (Path each : this.retired) {
+            this.storage.release(each);
+        }
+        this.retired.clear();
+    }
+
+    /**
+     * @param name the name of the deployment mounting the view
+     * @return a view to mount, which shares this file-system's files, and leaves closing it to the caller.
+     */
+    FileSystem view(String name) {
+        return new View(name);
+    }
+
+    private ArchivePath pathOf(VirtualFile mountPoint, VirtualFile target) {
+        if (mountPoint.equals(target)) {
+            return ArchivePaths.root();
+        }
+        return ArchivePaths.create(target.getPathNameRelativeTo(mountPoint));
+    }
+
+    private Node nodeOf(VirtualFile mountPoint, VirtualFile target) {
+        return this.archive.get(pathOf(mountPoint, target));
+    }
+
+    @Override
+    public File getFile(VirtualFile mountPoint, VirtualFile target) throws IOException {
+        ArchivePath path = pathOf(mountPoint, target);
+        Node node = this.archive.get(path);
+        if (node == null) {
+            return null;
+        }
+        return materialize(path, node);
+    }
+
+    private File materialize(ArchivePath path, Node node) throws IOException {
+        File file = this.files.get(path);
+        if (file != null) {
+            return file;
+        }
+
+        synchronized (this) {
+            file = this.files.get(path);
+            if (file != null) {
+                return file;
+            }
+
+            String name = path.get();
+            file = name.equals("/") ? this.tempDir.toFile() : this.tempDir.resolve(name.substring(1)).toFile();
+
+            Asset asset = node.getAsset();
+            if (asset == null) {
+                file.mkdirs();
+                for (Node child : node.getChildren()) {
+                    materialize(child.getPath(), child);
+                }
+            } else {
+                file.getParentFile().mkdirs();
+                try (InputStream in = asset.openStream()) {
+                    Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            this.files.put(path, file);
+            return file;
+        }
+    }
+
+    @Override
+    public InputStream openInputStream(VirtualFile mountPoint, VirtualFile target) throws IOException {
+        Node node = nodeOf(mountPoint, target);
+        if (node == null) {
+            throw new IOException("No such entry: " + target);
+        }
+        Asset asset = node.getAsset();
+        if (asset == null) {
+            throw new IOException("Not a file: " + target);
+        }
+        return asset.openStream();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public boolean delete(VirtualFile mountPoint, VirtualFile target) {
+        return false;
+    }
+
+    @Override
+    public long getSize(VirtualFile mountPoint, VirtualFile target) {
+        ArchivePath path = pathOf(mountPoint, target);
+        Node node = this.archive.get(path);
+        if (node == null || node.getAsset() == null) {
+            return 0L;
+        }
+
+        return this.sizes.computeIfAbsent(path, (p) -> sizeOf(node.getAsset()));
+    }
+
+    private static long sizeOf(Asset asset) {
+        if (asset instanceof FileAsset) {
+            return ((FileAsset) asset).getSource().length();
+        }
+        if (asset instanceof ByteArrayAsset) {
+            return ((ByteArrayAsset) asset).getSource().length;
+        }
+        long size = 0;
+        byte[] buf = new byte[8192];
+        try (InputStream in = asset.openStream()) {
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                size += len;
+            }
+        } catch (IOException e) {
+            return 0L;
+        }
+        return size;
+    }
+
+    @Override
+    public long getLastModified(VirtualFile mountPoint, VirtualFile target) {
+        return this.lastModified;
+    }
+
+    @Override
+    public boolean exists(VirtualFile mountPoint, VirtualFile target) {
+        return nodeOf(mountPoint, target) != null;
+    }
+
+    @Override
+    public boolean isFile(VirtualFile mountPoint, VirtualFile target) {
+        Node node = nodeOf(mountPoint, target);
+        return node != null && node.getAsset() != null;
+    }
+
+    @Override
+    public boolean isDirectory(VirtualFile mountPoint, VirtualFile target) {
+        Node node = nodeOf(mountPoint, target);
+        return node != null && node.getAsset() == null;
+    }
+
+    @Override
+    public List<String> getDirectoryEntries(VirtualFile mountPoint, VirtualFile target) {
+        Node node = nodeOf(mountPoint, target);
+        if (node == null || node.getAsset() != null) {
+            return Collections.emptyList();
+        }
+
+        List<String> entries = new ArrayList<>();
+        for (Node child : node.getChildren()) {
+            String name = child.getPath().get();
+            entries.add(name.substring(name.lastIndexOf('/') + 1));
+        }
+        return entries;
+    }
+
+    @Override
+    public CodeSigner[] getCodeSigners(VirtualFile mountPoint, VirtualFile target) {
+        return null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        releaseRetired();
+        this.storage.release(this.tempDir);
+    }
+
+    @Override
+    public File getMountSource() {
+        return null;
+    }
+
+    @Override
+    public URI getRootURI() throws URISyntaxException {
+        return new URI("vfs", "/" + this.archive.getName(), null);
+    }
+
+    private class View implements FileSystem {
+
+        private final String name;
+
+        View(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public File getFile(VirtualFile mountPoint, VirtualFile target) throws IOException {
+            return ArchiveFileSystem.this.getFile(mountPoint, target);
+        }
+
+        @Override
+        public InputStream openInputStream(VirtualFile mountPoint, VirtualFile target) throws IOException {
+            return ArchiveFileSystem.this.openInputStream(mountPoint, target);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        @Override
+        public boolean delete(VirtualFile mountPoint, VirtualFile target) {
+            return false;
+        }
+
+        @Override
+        public long getSize(VirtualFile mountPoint, VirtualFile target) {
+            return ArchiveFileSystem.this.getSize(mountPoint, target);
+        }
+
+        @Override
+        public long getLastModified(VirtualFile mountPoint, VirtualFile target) {
+            return ArchiveFileSystem.this.getLastModified(mountPoint, target);
+        }
+
+        @Override
+        public boolean exists(VirtualFile mountPoint, VirtualFile target) {
+            return ArchiveFileSystem.this.exists(mountPoint, target);
+        }
+
+        @Override
+        public boolean isFile(VirtualFile mountPoint, VirtualFile target) {
+            return ArchiveFileSystem.this.isFile(mountPoint, target);
+        }
+
+        @Override
+        public boolean isDirectory(VirtualFile mountPoint, VirtualFile target) {
+            return ArchiveFileSystem.this.isDirectory(mountPoint, target);
+        }
+
+        @Override
+        public List<String> getDirectoryEntries(VirtualFile mountPoint, VirtualFile target) {
+            return ArchiveFileSystem.this.getDirectoryEntries(mountPoint, target);
+        }
+
+        @Override
+        public CodeSigner[] getCodeSigners(VirtualFile mountPoint, VirtualFile target) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            // shared; closed by its owner once no view remains mounted
+        }
+
+        @Override
+        public File getMountSource() {
+            return null;
+        }
+
+        @Override
+        public URI getRootURI() throws URISyntaxException {
+            return new URI("vfs", "/" + this.name, null);
+        }
+    }
+}
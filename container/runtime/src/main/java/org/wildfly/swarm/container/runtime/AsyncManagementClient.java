@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.jboss.as.controller.ModelController;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.jboss.threads.AsyncFuture;
+import org.wildfly.swarm.container.ManagementClient;
+
+/**
+ * {@link ManagementClient} over an in-VM {@link ModelControllerClient}.
+ *
+ * <p>Each operation is handed to the client's executor, and its future completed
+ * from the controller's own notification, so no thread waits on the result.
+ * Runtime code may use {@link #executeAsync(ModelNode)} directly.</p>
+ */
+class AsyncManagementClient implements ManagementClient {
+
+    private final ModelController controller;
+
+    private final ModelControllerClient client;
+
+    AsyncManagementClient(ModelController controller, Executor executor) {
+        this.controller = controller;
+        this.client = controller.createClient(executor);
+    }
+
+    /**
+     * @return the blocking client over the same executor.
+     */
+    ModelControllerClient getClient() {
+        return this.client;
+    }
+
+    @Override
+    public CompletableFuture<String> execute(String operation) {
+        ModelNode op;
+        try {
+            op = ModelNode.fromJSONString(operation);
+        } catch (IllegalArgumentException e) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        return executeAsync(op).thenApply((result) -> result.toJSONString(true));
+    }
+
+    CompletableFuture<ModelNode> executeAsync(ModelNode operation) {
+        CompletableFuture<ModelNode> result = new CompletableFuture<>();
+        AsyncFuture<ModelNode> future;
+        try {
+            future = this.client.executeAsync(operation, OperationMessageHandler.DISCARD);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        future.addListener(new AsyncFuture.Listener<ModelNode, CompletableFuture<ModelNode>>() {
+            @Override
+            public void handleComplete(AsyncFuture<? extends ModelNode> future, CompletableFuture<ModelNode> result) {
+                try {
+                    result.complete(future.get());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void handleFailed(AsyncFuture<? extends ModelNode> future, Throwable cause, CompletableFuture<ModelNode> result) {
+                result.completeExceptionally(cause);
+            }
+
+            @Override
+            public void handleCancelled(AsyncFuture<? extends ModelNode> future, CompletableFuture<ModelNode> result) {
+                result.completeExceptionally(new CancellationException());
+            }
+        }, result);
+        return result;
+    }
+
+    @Override
+    public ManagementClient withExecutor(Executor executor) {
+        return new AsyncManagementClient(this.controller, executor);
+    }
+}
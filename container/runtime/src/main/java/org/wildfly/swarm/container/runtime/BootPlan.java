@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.as.controller.PathAddress;
+import org.jboss.dmr.ModelNode;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.EXTENSION;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+
+/**
+ * Orders the boot operations into stages.
+ *
+ * <ol>
+ *     <li>every {@code extension=*:add}</li>
+ *     <li>the remaining non-subsystem operations (interfaces, socket-bindings, paths ...), in their original order</li>
+ *     <li>the operations of each {@code subsystem=*}, each subsystem kept contiguous and in its original order</li>
+ * </ol>
+ *
+ * <p>The server controller boots extensions in parallel, and boots the subsystem
+ * operations following them in parallel, one task per subsystem, up to the first
+ * operation that does not address a subsystem. Interleaving an interface or
+ * socket-binding between subsystems, as a flat per-fraction list does, ends the
+ * parallel stage early; subsystems then depend on each other only through their
+ * services.</p>
+ */
+public class BootPlan {
+
+    private final List<ModelNode> extensions = new ArrayList<>();
+
+    private final List<ModelNode> core = new ArrayList<>();
+
+    private final Map<String, List<ModelNode>> subsystems = new LinkedHashMap<>();
+
+    public BootPlan add(List<ModelNode> operations) {
+        for (ModelNode each : operations) {
+            add(each);
+        }
+        return this;
+    }
+
+    public BootPlan add(ModelNode operation) {
+        PathAddress address = PathAddress.pathAddress(operation.get(OP_ADDR));
+
+        if (address.size() == 0) {
+            this.core.add(operation);
+            return this;
+        }
+
+        String key = address.getElement(0).getKey();
+        if (address.size() == 1 && key.equals(EXTENSION) && operation.require(OP).asString().equals(ADD)) {
+            this.extensions.add(operation);
+        } else if (key.equals(SUBSYSTEM)) {
+            this.subsystems.computeIfAbsent(address.getElement(0).getValue(), (k) -> new ArrayList<>()).add(operation);
+        } else {
+            this.core.add(operation);
+        }
+        return this;
+    }
+
+    public List<ModelNode> getExtensions() {
+        return Collections.unmodifiableList(this.extensions);
+    }
+
+    public List<ModelNode> getCore() {
+        return Collections.unmodifiableList(this.core);
+    }
+
+    public Map<String, List<ModelNode>> getSubsystems() {
+        return Collections.unmodifiableMap(this.subsystems);
+    }
+
+    /**
+     * @return every operation, flattened in stage order.
+     */
+    public List<ModelNode> toList() {
+        List<ModelNode> list = new ArrayList<>(this.extensions);
+        list.addAll(this.core);
+        for (List<ModelNode> each : this.subsystems.values()) {
+            list.addAll(each);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.wildfly.swarm.bootstrap.util.Layout;
+
+/**
+ * Time spent by each fraction, and by the container, while starting.
+ *
+ * <p>Printed once started when the {@code swarm.boot.timings} system property is set,
+ * along with the number of jars opened from disk by the bootstrap.</p>
+ */
+public class BootTimings {
+
+    public static final String PRINT_PROPERTY = "swarm.boot.timings";
+
+    public static final String CONTAINER = "container";
+
+    private final Map<String, Map<String, Long>> timings = new LinkedHashMap<>();
+
+    /**
+     * Record a duration, adding to any already recorded for the same owner and phase.
+     *
+     * @param owner the fraction type, or {@link #CONTAINER}
+     * @param phase such as {@code getList}, {@code boot} or {@code deploy}
+     * @param nanos the elapsed time
+     */
+    public synchronized void record(String owner, String phase, long nanos) {
+        this.timings.computeIfAbsent(owner, (k) -> new LinkedHashMap<>()).merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * @return elapsed milliseconds, by owner then phase.
+     */
+    public synchronized Map<String, Map<String, Long>> getTimings() {
+        Map<String, Map<String, Long>> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> owner : this.timings.entrySet()) {
+            Map<String, Long> phases = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> phase : owner.getValue().entrySet()) {
+                phases.put(phase.getKey(), TimeUnit.NANOSECONDS.toMillis(phase.getValue()));
+            }
+            millis.put(owner.getKey(), Collections.unmodifiableMap(phases));
+        }
+        return Collections.unmodifiableMap(millis);
+    }
+
+    /**
+     * @return the number of jars opened from disk by the bootstrap so far.
+     */
+    public int getJarOpenCount() {
+        return Layout.getJarOpenCount();
+    }
+
+    void print() {
+        for (Map.Entry<String, Map<String, Long>> owner : getTimings().entrySet()) {
+            System.err.println("[TIMING] " + owner.getKey() + " " + owner.getValue());
+        }
+        System.err.println("[TIMING] jars opened " + getJarOpenCount());
+    }
+}
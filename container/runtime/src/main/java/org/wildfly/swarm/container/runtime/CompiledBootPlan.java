@@ -0,0 +1,182 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.dmr.ModelNode;
+import org.wildfly.swarm.bootstrap.util.ExtractionCache;
+import org.wildfly.swarm.bootstrap.util.PackagingProperties;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
+import org.wildfly.swarm.bootstrap.util.Timeline;
+import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.Fraction;
+
+/**
+ * Boot operations compiled at build time.
+ *
+ * <p>The packaging tooling runs the application once with {@link RuntimeServer#BOOT_PLAN_COMPILE}
+ * set, which writes the boot operations, in DMR binary form, rather than starting the
+ * container. The result is packaged as {@code META-INF/wildfly-swarm-boot.dmr}, and replayed
+ * in place of each fraction's {@link ServerConfiguration#getList(Fraction)} on start, if
+ * {@link RuntimeServer#BOOT_PLAN} is set.</p>
+ *
+ * <p>The operations are then only replayed if the fingerprint of the inputs known to change the
+ * configuration without rebuilding, being the fraction types, the command-line arguments,
+ * the {@code swarm.*} system properties and the number of processors, by which the default
+ * thread pools are sized, matches that recorded at build time. Anything else the application
+ * reads while configuring its fractions is not covered, which is why replay is opt-in.</p>
+ */
+class CompiledBootPlan {
+
+    static final String PATH = PackagingProperties.BOOT_PLAN_PATH;
+
+    private static final int MAGIC = 0x53574244;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Properties which do not affect the configuration.
+     */
+    private static final Set<String> IGNORED_PROPERTIES = new HashSet<>(Arrays.asList(
+            RuntimeServer.BOOT_PLAN,
+            RuntimeServer.BOOT_PLAN_COMPILE,
+            RuntimeServer.CDS_TRAINING,
+            BootTimings.PRINT_PROPERTY,
+            Timeline.PROPERTY,
+            Timeline.FORMAT_PROPERTY,
+            ExtractionCache.CACHE_DIR_PROPERTY,
+            TempStorage.PROPERTY,
+            TempStorage.DIR_PROPERTY,
+            TempStorage.MEMORY_LIMIT_PROPERTY,
+            TempStorage.RUN_PROPERTY,
+            "swarm.bootstrap.parallel",
+            "swarm.export.deployment"
+    ));
+
+    private CompiledBootPlan() {
+
+    }
+
+    static String fingerprint(Container config) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Set<String> fractions = new TreeSet<>();
+        for (Fraction each : config.fractions()) {
+            fractions.add(each.getClass().getName());
+        }
+        update(digest, "fractions", fractions.toString());
+
+        String[] args = config.getArgs();
+        update(digest, "args", args == null ? "" : Arrays.toString(args));
+
+        Map<String, String> properties = new TreeMap<>();
+        for (String each : System.getProperties().stringPropertyNames()) {
+            if (each.startsWith("swarm.") && !IGNORED_PROPERTIES.contains(each)) {
+                properties.put(each, System.getProperty(each));
+            }
+        }
+        update(digest, "properties", properties.toString());
+
+        update(digest, "processors", Integer.toString(Runtime.getRuntime().availableProcessors()));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, String key, String value) {
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @return the packaged operations, or {@code null} if there are none, they are unreadable, or they were compiled for other inputs.
+     */
+    static List<ModelNode> load(String fingerprint) throws IOException {
+        InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(PATH);
+        if (in == null) {
+            return null;
+        }
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != MAGIC) {
+                System.err.println("[WARN] ignoring invalid compiled boot plan");
+                return null;
+            }
+            int version = data.readInt();
+            if (version != VERSION) {
+                System.err.println("[WARN] ignoring compiled boot plan of unsupported version " + version);
+                return null;
+            }
+            if (!fingerprint.equals(data.readUTF())) {
+                return null;
+            }
+
+            ModelNode node = new ModelNode();
+            node.readExternal(data);
+
+            List<ModelNode> list = new ArrayList<>();
+            if (node.isDefined()) {
+                list.addAll(node.asList());
+            }
+            return list;
+        }
+    }
+
+    static void write(Path path, String fingerprint, List<ModelNode> list) throws IOException {
+        ModelNode node = new ModelNode();
+        node.setEmptyList();
+        for (ModelNode each : list) {
+            node.add(each);
+        }
+
+        try (OutputStream out = Files.newOutputStream(path);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeUTF(fingerprint);
+            node.writeExternal(data);
+        }
+    }
+}
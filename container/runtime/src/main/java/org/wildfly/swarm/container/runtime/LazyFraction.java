@@ -0,0 +1,258 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceActivator;
+import org.jboss.msc.service.ServiceActivatorContext;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.service.ServiceTarget;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StartException;
+import org.jboss.msc.service.StopContext;
+import org.jboss.shrinkwrap.api.Archive;
+import org.wildfly.swarm.container.Deployer;
+import org.wildfly.swarm.container.Fraction;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.COMPOSITE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OPERATION_REQUIRES_RELOAD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OUTCOME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.PROCESS_STATE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.RESPONSE_HEADERS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.STEPS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUCCESS;
+
+/**
+ * A fraction whose subsystem is left out of the boot operations, and only
+ * configured the first time it is needed.
+ *
+ * <p>Until then, only an on-demand placeholder service is installed, named by
+ * {@link #serviceName(Class)}. Activation happens when a service depending upon
+ * that placeholder is started, before a deployment which
+ * {@link ServerConfiguration#isNeededBy(Archive) needs} the fraction, or when requested
+ * through {@link RuntimeServer#activate(Class)}. Activating runs the fraction's
+ * {@link ServerConfiguration#getList(Fraction)} operations as a single composite,
+ * then installs its service-activators and implicit deployments.</p>
+ *
+ * <p>Only subsystems which take effect when added to a running server may be activated
+ * this way. Those which install deployment processors or otherwise only start at boot
+ * are always configured at boot; should any other only require a reload, activation
+ * fails rather than leave the subsystem without its services.</p>
+ */
+class LazyFraction {
+
+    /**
+     * Subsystems whose add operation only takes effect at boot, and puts a running server in reload-required.
+     */
+    private static final Set<String> BOOT_ONLY_SUBSYSTEMS = new HashSet<>(Arrays.asList(
+            "batch-jberet",
+            "bean-validation",
+            "ee",
+            "ejb3",
+            "jaxrs",
+            "jca",
+            "jpa",
+            "jsf",
+            "messaging-activemq",
+            "naming",
+            "security",
+            "transactions",
+            "undertow",
+            "webservices",
+            "weld"
+    ));
+
+    private final ServerConfiguration configuration;
+
+    private final Fraction fraction;
+
+    private ModelControllerClient client;
+
+    private ServiceContainer serviceContainer;
+
+    private Deployer deployer;
+
+    private boolean activated;
+
+    LazyFraction(ServerConfiguration configuration, Fraction fraction) {
+        this.configuration = configuration;
+        this.fraction = fraction;
+    }
+
+    static ServiceName serviceName(Class<? extends Fraction> type) {
+        return ServiceName.of("wildfly", "swarm", "lazy", type.getName());
+    }
+
+    /**
+     * Whether the fraction's subsystems may be added to a running server.
+     */
+    @SuppressWarnings("unchecked")
+    static boolean isActivatableAtRuntime(ServerConfiguration configuration, Fraction fraction) throws Exception {
+        for (ModelNode each : (List<ModelNode>) configuration.getList(fraction)) {
+            ModelNode address = each.get(OP_ADDR);
+            if (address.getType() != ModelType.LIST || address.asList().isEmpty()) {
+                continue;
+            }
+            Property first = address.asList().get(0).asProperty();
+            if (SUBSYSTEM.equals(first.getName()) && BOOT_ONLY_SUBSYSTEMS.contains(first.getValue().asString())) {
+                System.err.println("[WARN] " + configuration.getType().getName() + " is configured at boot, as the "
+                        + first.getValue().asString() + " subsystem cannot be added to a running server");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ServerConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Install the placeholder service; the container is up and the fraction may now be activated.
+     */
+    void install(ServiceContainer serviceContainer, ModelControllerClient client, Deployer deployer, Executor executor) {
+        this.serviceContainer = serviceContainer;
+        this.client = client;
+        this.deployer = deployer;
+
+        serviceContainer.addService(serviceName(this.configuration.getType()), new PlaceholderService(executor))
+                .setInitialMode(ServiceController.Mode.ON_DEMAND)
+                .install();
+    }
+
+    boolean isActivated() {
+        synchronized (LazyFraction.class) {
+            return this.activated;
+        }
+    }
+
+    void activate() throws Exception {
+        // one lock for all lazy fractions, as activating one may deploy and so activate others
+        synchronized (LazyFraction.class) {
+            if (this.activated) {
+                return;
+            }
+            if (this.client == null) {
+                throw new IllegalStateException("Container not started");
+            }
+            this.activated = true;
+            doActivate();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void doActivate() throws Exception {
+
+        List<ModelNode> list = new BootPlan().add(this.configuration.getList(this.fraction)).toList();
+        if (!list.isEmpty()) {
+
+            ModelNode composite = new ModelNode();
+            composite.get(OP).set(COMPOSITE);
+            composite.get(OP_ADDR).setEmptyList();
+            ModelNode steps = composite.get(STEPS);
+            for (ModelNode each : list) {
+                steps.add(each);
+            }
+
+            ModelNode result = this.client.execute(composite);
+            if (!SUCCESS.equals(result.get(OUTCOME).asString())) {
+                throw new Exception("Unable to activate " + this.configuration.getType().getName() + ": " + result.get(FAILURE_DESCRIPTION));
+            }
+            if (requiresReload(result)) {
+                throw new Exception("Unable to activate " + this.configuration.getType().getName()
+                        + ": its subsystem only takes effect after a reload; remove it from " + RuntimeServer.LAZY_FRACTIONS);
+            }
+        }
+
+        List<ServiceActivator> activators = this.configuration.getServiceActivators(this.fraction);
+        if (!activators.isEmpty()) {
+            ServiceActivatorContext context = new ServiceActivatorContext() {
+                @Override
+                public ServiceTarget getServiceTarget() {
+                    return serviceContainer;
+                }
+
+                @Override
+                public ServiceRegistry getServiceRegistry() {
+                    return serviceContainer;
+                }
+            };
+            for (ServiceActivator each : activators) {
+                each.activate(context);
+            }
+        }
+
+        List<Archive> implicitDeployments = this.configuration.getImplicitDeployments(this.fraction);
+        this.deployer.deploy(implicitDeployments);
+    }
+
+    private static boolean requiresReload(ModelNode result) {
+        if (!result.hasDefined(RESPONSE_HEADERS)) {
+            return false;
+        }
+        ModelNode headers = result.get(RESPONSE_HEADERS);
+        return (headers.hasDefined(OPERATION_REQUIRES_RELOAD) && headers.get(OPERATION_REQUIRES_RELOAD).asBoolean())
+                || (headers.hasDefined(PROCESS_STATE) && "reload-required".equals(headers.get(PROCESS_STATE).asString()));
+    }
+
+    private class PlaceholderService implements Service<Void> {
+
+        private final Executor executor;
+
+        PlaceholderService(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void start(StartContext context) throws StartException {
+            // management operations must not run from within an MSC start
+            this.executor.execute(() -> {
+                try {
+                    activate();
+                } catch (Exception e) {
+                    System.err.println("[WARN] " + e.getMessage());
+                }
+            });
+        }
+
+        @Override
+        public void stop(StopContext context) {
+
+        }
+
+        @Override
+        public Void getValue() throws IllegalStateException, IllegalArgumentException {
+            return null;
+        }
+    }
+}
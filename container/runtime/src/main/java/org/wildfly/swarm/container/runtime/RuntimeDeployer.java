@@ -15,13 +15,18 @@
  */
 package org.wildfly.swarm.container.runtime;
 
-import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.jboss.as.controller.client.ModelControllerClient;
 import org.jboss.dmr.ModelNode;
@@ -29,18 +34,29 @@ import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ArchivePath;
 import org.jboss.shrinkwrap.api.Node;
 import org.jboss.shrinkwrap.api.exporter.ZipExporter;
-import org.jboss.vfs.TempFileProvider;
-import org.jboss.vfs.VFS;
-import org.jboss.vfs.VirtualFile;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
+import org.wildfly.swarm.bootstrap.util.Timeline;
 import org.wildfly.swarm.container.Deployer;
 
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.COMPOSITE;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.CONTENT;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.DEPLOY;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.DEPLOYMENT;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ENABLED;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.FAILURE_DESCRIPTION;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.HASH;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OPERATION_HEADERS;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OUTCOME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.REMOVE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.RESULT;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ROLLBACK_ON_RUNTIME_FAILURE;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.RUNTIME_NAME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.STEPS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUCCESS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.UNDEPLOY;
 
 /**
  * @author Bob McWhirter
@@ -53,32 +69,197 @@ public class RuntimeDeployer implements Deployer {
 
     private final List<ServerConfiguration> configurations;
 
-    private final TempFileProvider tempFileProvider;
+    private final List<LazyFraction> lazyFractions;
 
-    private final List<Closeable> mountPoints = new ArrayList<>();
+    private final TempStorage tempStorage;
 
-    public RuntimeDeployer(List<ServerConfiguration> configurations, ModelControllerClient client, SimpleContentProvider contentProvider, TempFileProvider tempFileProvider) throws IOException {
+    private final Map<String, Deployment> deployments = new ConcurrentHashMap<>();
+
+    public RuntimeDeployer(List<ServerConfiguration> configurations, List<LazyFraction> lazyFractions, ModelControllerClient client, SimpleContentProvider contentProvider, TempStorage tempStorage) throws IOException {
         this.configurations = configurations;
+        this.lazyFractions = lazyFractions;
         this.client = client;
         this.contentProvider = contentProvider;
-        this.tempFileProvider = tempFileProvider;
-        //this.executor = Executors.newSingleThreadScheduledExecutor();
-        //this.tempFileProvider = TempFileProvider.create("wildfly-swarm", this.executor);
+        this.tempStorage = tempStorage;
     }
 
     @Override
     public void deploy(Archive deployment) throws IOException {
+        deploy(Collections.singletonList(deployment));
+    }
 
-        for (ServerConfiguration each : this.configurations) {
-            each.prepareArchive(deployment);
+    /**
+     * Prepare and mount each archive in parallel, then add them all using a single
+     * composite operation, so that their deployment services start concurrently.
+     *
+     * <p>Runtime failures of one deployment do not roll back the others, but if any archive
+     * cannot be prepared, those already prepared are released before the failure is thrown.
+     * An archive whose name is already deployed is rejected; use {@link #redeploy(Archive)}.</p>
+     */
+    @Override
+    public void deploy(List<Archive> deployments) throws IOException {
+        if (deployments.isEmpty()) {
+            return;
+        }
+
+        Set<String> names = new HashSet<>();
+        for (Archive each : deployments) {
+            if (!names.add(each.getName()) || this.deployments.containsKey(each.getName())) {
+                throw new IOException("Already deployed: " + each.getName() + "; use redeploy");
+            }
+        }
+
+        activateLazyFractions(deployments);
+
+        long start = Timeline.start();
+
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        Set<String> prepared = ConcurrentHashMap.newKeySet();
+        List<ModelNode> steps;
+        try {
+            Stream<Archive> stream = deployments.size() > 1 ? deployments.parallelStream() : deployments.stream();
+            steps = stream.map((each) -> prepare(each, cl, prepared)).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            IOException cause = e.getCause();
+            for (String each : prepared) {
+                try {
+                    release(each);
+                } catch (IOException suppressed) {
+                    cause.addSuppressed(suppressed);
+                }
+            }
+            throw cause;
+        }
+
+        ModelNode op;
+        if (steps.size() == 1) {
+            op = steps.get(0);
+        } else {
+            op = new ModelNode();
+            op.get(OP).set(COMPOSITE);
+            op.get(OP_ADDR).setEmptyList();
+            for (ModelNode each : steps) {
+                op.get(STEPS).add(each);
+            }
+            op.get(OPERATION_HEADERS, ROLLBACK_ON_RUNTIME_FAILURE).set(false);
+        }
+
+        ModelNode result = client.execute(op);
+        if (!SUCCESS.equals(result.get(OUTCOME).asString())) {
+            System.err.println("[ERROR] deployment failed: " + result.get(FAILURE_DESCRIPTION));
+            for (int i = 0; i < deployments.size(); ++i) {
+                ModelNode stepResult = (steps.size() == 1) ? result : result.get(RESULT, "step-" + (i + 1));
+                if (!SUCCESS.equals(stepResult.get(OUTCOME).asString())) {
+                    release(deployments.get(i).getName());
+                }
+            }
+        }
+
+        for (Archive each : deployments) {
+            Timeline.end("deployment", each.getName(), start);
+        }
+        Timeline.export();
+    }
+
+    @Override
+    public void undeploy(String name) throws IOException {
+        if (!this.deployments.containsKey(name)) {
+            throw new IOException("No such deployment: " + name);
+        }
+
+        ModelNode op = new ModelNode();
+        op.get(OP).set(REMOVE);
+        op.get(OP_ADDR).set(DEPLOYMENT, name);
+
+        ModelNode result = client.execute(op);
+        if (!SUCCESS.equals(result.get(OUTCOME).asString())) {
+            throw new IOException("Unable to undeploy " + name + ": " + result.get(FAILURE_DESCRIPTION));
+        }
+
+        release(name);
+    }
+
+    /**
+     * Diff the archive against the mounted one by entry digest, and give the existing mount the new
+     * archive. If a class, library or descriptor changed, the deployment is stopped before the
+     * switch and started again after it, so that it never sees its files change beneath it.
+     * Content shared with another deployment is deployed afresh instead.
+     */
+    @Override
+    public void redeploy(Archive deployment) throws IOException {
+        Deployment current = this.deployments.get(deployment.getName());
+        if (current == null) {
+            deploy(deployment);
+            return;
+        }
+
+        long start = Timeline.start();
+
+        Map<String, byte[]> entries = prepareArchive(deployment);
+        Set<String> changed = diff(current.entries, entries);
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        ArchiveFileSystem fileSystem = this.contentProvider.getFileSystem(current.hash);
+        if (fileSystem == null || this.contentProvider.getReferences(current.hash) > 1) {
+            undeploy(deployment.getName());
+            deploy(deployment);
+            return;
+        }
+
+        if (changed.stream().anyMatch(RuntimeDeployer::requiresRestart)) {
+            execute(UNDEPLOY, deployment.getName());
+            fileSystem.replace(deployment);
+            fileSystem.releaseRetired();
+            execute(DEPLOY, deployment.getName());
+        } else {
+            fileSystem.replace(deployment);
+        }
+        this.contentProvider.updateContent(current.hash, entries);
+        current.entries = entries;
+
+        Timeline.end("deployment", deployment.getName() + " (redeploy)", start);
+    }
+
+    private void execute(String operation, String name) throws IOException {
+        ModelNode op = new ModelNode();
+        op.get(OP).set(operation);
+        op.get(OP_ADDR).set(DEPLOYMENT, name);
+
+        ModelNode result = client.execute(op);
+        if (!SUCCESS.equals(result.get(OUTCOME).asString())) {
+            throw new IOException("Unable to " + operation + " " + name + ": " + result.get(FAILURE_DESCRIPTION));
+        }
+    }
+
+    static Set<String> diff(Map<String, byte[]> current, Map<String, byte[]> replacement) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, byte[]> each : replacement.entrySet()) {
+            if (!Arrays.equals(each.getValue(), current.get(each.getKey()))) {
+                changed.add(each.getKey());
+            }
         }
+        for (String each : current.keySet()) {
+            if (!replacement.containsKey(each)) {
+                changed.add(each);
+            }
+        }
+        return changed;
+    }
+
+    static boolean requiresRestart(String path) {
+        return path.endsWith(".class")
+                || path.endsWith(".jar")
+                || path.startsWith("/WEB-INF/")
+                || path.startsWith("/META-INF/");
+    }
 
-        /*
-        Map<ArchivePath, Node> c = deployment.getContent();
-        for (Map.Entry<ArchivePath, Node> each : c.entrySet()) {
-            System.err.println(each.getKey() + " // " + each.getValue());
+    private Map<String, byte[]> prepareArchive(Archive deployment) throws IOException {
+        for (ServerConfiguration each : this.configurations) {
+            each.prepareArchive(deployment);
         }
-        */
 
         String dump = System.getProperty("swarm.export.deployment");
         if (dump != null &&
@@ -88,38 +269,80 @@ public class RuntimeDeployer implements Deployer {
             deployment.as(ZipExporter.class).exportTo(out, true);
         }
 
-        VirtualFile mountPoint = VFS.getRootVirtualFile().getChild(deployment.getName());
+        return SimpleContentProvider.digest(deployment);
+    }
 
-        try (InputStream in = deployment.as(ZipExporter.class).exportAsInputStream()) {
-            Closeable closeable = VFS.mountZipExpanded(in, deployment.getName(), mountPoint, tempFileProvider);
-            this.mountPoints.add(closeable);
-            //System.err.println( "mount: " + mountPoint + " // " + mountPoint.getPhysicalFile() );
-        }
+    private ModelNode prepare(Archive deployment, ClassLoader cl, Set<String> prepared) {
+        Thread thread = Thread.currentThread();
+        ClassLoader originalCl = thread.getContextClassLoader();
+        thread.setContextClassLoader(cl);
+        try {
+            Map<String, byte[]> entries = prepareArchive(deployment);
 
-        byte[] hash = this.contentProvider.addContent(mountPoint);
+            byte[] hash = this.contentProvider.addContent(deployment, entries, this.tempStorage);
+            if (this.deployments.putIfAbsent(deployment.getName(), new Deployment(hash, entries)) != null) {
+                this.contentProvider.removeContent(hash);
+                throw new IOException("Already deployed: " + deployment.getName() + "; use redeploy");
+            }
+            prepared.add(deployment.getName());
 
-        final ModelNode deploymentAdd = new ModelNode();
+            final ModelNode deploymentAdd = new ModelNode();
 
-        deploymentAdd.get(OP).set(ADD);
-        deploymentAdd.get(OP_ADDR).set("deployment", deployment.getName());
-        deploymentAdd.get(RUNTIME_NAME).set(deployment.getName());
-        deploymentAdd.get(ENABLED).set(true);
+            deploymentAdd.get(OP).set(ADD);
+            deploymentAdd.get(OP_ADDR).set(DEPLOYMENT, deployment.getName());
+            deploymentAdd.get(RUNTIME_NAME).set(deployment.getName());
+            deploymentAdd.get(ENABLED).set(true);
 
-        ModelNode content = deploymentAdd.get(CONTENT).add();
-        content.get(HASH).set(hash);
+            ModelNode content = deploymentAdd.get(CONTENT).add();
+            content.get(HASH).set(hash);
 
-        System.setProperty("wildfly.swarm.current.deployment", deployment.getName());
-        ModelNode result = client.execute(deploymentAdd);
+            return deploymentAdd;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            thread.setContextClassLoader(originalCl);
+        }
     }
 
-    void stop() {
-        for (Closeable each : this.mountPoints) {
-            try {
-                each.close();
-            } catch (IOException e) {
+    private void release(String name) throws IOException {
+        Deployment deployment = this.deployments.remove(name);
+        if (deployment != null) {
+            this.contentProvider.removeContent(deployment.hash);
+        }
+    }
+
+    /**
+     * Activate the lazy fractions needed by any of the deployments.
+     */
+    @SuppressWarnings("unchecked")
+    private void activateLazyFractions(List<Archive> deployments) throws IOException {
+        for (LazyFraction each : this.lazyFractions) {
+            if (!each.isActivated() && deployments.stream().anyMatch((d) -> each.getConfiguration().isNeededBy(d))) {
+                try {
+                    each.activate();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
             }
         }
+    }
 
+    void stop() {
+        this.deployments.clear();
+        this.contentProvider.close();
+    }
+
+    private static class Deployment {
+        private final byte[] hash;
+
+        private volatile Map<String, byte[]> entries;
+
+        Deployment(byte[] hash, Map<String, byte[]> entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
     }
 
 }
@@ -15,10 +15,10 @@
  */
 package org.wildfly.swarm.container.runtime;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +28,6 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.LogManager;
 
@@ -45,17 +44,22 @@ import org.jboss.modules.ModuleLoadException;
 import org.jboss.msc.service.ServiceActivator;
 import org.jboss.msc.service.ServiceActivatorContext;
 import org.jboss.msc.service.ServiceContainer;
-import org.jboss.msc.service.ServiceController;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.ServiceRegistryException;
+import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.ValueService;
 import org.jboss.msc.value.ImmediateValue;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.vfs.TempFileProvider;
+import org.wildfly.swarm.bootstrap.util.PackagingProperties;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
+import org.wildfly.swarm.bootstrap.util.Timeline;
 import org.wildfly.swarm.container.Container;
 import org.wildfly.swarm.container.Deployer;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.Fraction;
 import org.wildfly.swarm.container.Interface;
+import org.wildfly.swarm.container.ManagementClient;
 import org.wildfly.swarm.container.RuntimeModuleProvider;
 import org.wildfly.swarm.container.Server;
 import org.wildfly.swarm.container.SocketBinding;
@@ -63,7 +67,6 @@ import org.wildfly.swarm.container.SocketBindingGroup;
 
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.DEFAULT_INTERFACE;
-import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.EXTENSION;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.INET_ADDRESS;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.MULTICAST_ADDRESS;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.MULTICAST_PORT;
@@ -78,6 +81,30 @@ import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.POR
  */
 public class RuntimeServer implements Server {
 
+    /**
+     * Set by the packaging tooling while recording the class-list for a shared archive.
+     */
+    public static final String CDS_TRAINING = PackagingProperties.CDS_TRAINING;
+
+    /**
+     * Comma-separated simple or fully-qualified names of fraction types to activate lazily.
+     */
+    public static final String LAZY_FRACTIONS = "swarm.fractions.lazy";
+
+    /**
+     * Set by the packaging tooling to the file to which to write the boot operations, instead of starting.
+     */
+    public static final String BOOT_PLAN_COMPILE = PackagingProperties.BOOT_PLAN_COMPILE;
+
+    /**
+     * Set to {@code true} to replay the boot operations compiled at build time.
+     *
+     * <p>Only the inputs known to the container are fingerprinted, not the environment variables,
+     * properties or files the application's {@code main()} may read, so replay is only enabled
+     * where the configuration is known not to depend on those.</p>
+     */
+    public static final String BOOT_PLAN = "swarm.boot.plan";
+
     private SelfContainedContainer container = new SelfContainedContainer();
 
     private SimpleContentProvider contentProvider = new SimpleContentProvider();
@@ -86,12 +113,24 @@ public class RuntimeServer implements Server {
 
     private ModelControllerClient client;
 
+    private AsyncManagementClient managementClient;
+
+    private ExecutorTopology executors;
+
     private RuntimeDeployer deployer;
 
     private Map<Class<? extends Fraction>, ServerConfiguration> configByFractionType = new ConcurrentHashMap();
 
     private List<ServerConfiguration> configList = new ArrayList<>();
 
+    private List<LazyFraction> lazyFractions = new ArrayList<>();
+
+    private BootTimings timings = new BootTimings();
+
+    private ServiceFailureMonitor failureMonitor = new ServiceFailureMonitor();
+
+    private TempStorage tempStorage = TempStorage.getInstance();
+
     public RuntimeServer() {
         try {
             Module loggingModule = Module.getBootModuleLoader().loadModule(ModuleIdentifier.create("org.wildfly.swarm.logging", "runtime"));
@@ -108,6 +147,9 @@ public class RuntimeServer implements Server {
         } catch (ModuleLoadException e) {
             System.err.println( "[WARN] wildfly-swarm-logging not available, logging will not be configured" );
         }
+
+        // only now that the log manager is in place
+        Timeline.register();
     }
 
     @Override
@@ -116,30 +158,35 @@ public class RuntimeServer implements Server {
         UUID uuid = UUIDFactory.getUUID();
         System.setProperty("jboss.server.management.uuid", uuid.toString());
 
+        long phaseStart = Timeline.start();
         loadFractionConfigurations();
+        Timeline.end("container", "loadFractionConfigurations", phaseStart);
 
         applyDefaults(config);
 
         for (Fraction fraction : config.fractions() ) {
+            phaseStart = Timeline.start();
             fraction.postInitialize( config.createPostInitContext() );
+            Timeline.end("fractions", fraction.getClass().getName() + ".postInitialize", phaseStart);
         }
 
-        List<ModelNode> list = getList(config);
-
-        // float all <extension> up to the head of the list
-        list.sort(new ExtensionOpPriorityComparator());
+        List<ModelNode> list = getBootOperations(config);
+        if (list == null) {
+            // only compiled, per BOOT_PLAN_COMPILE; nothing is started
+            return new DiscardingDeployer();
+        }
 
         //System.err.println( list );
 
         Thread.currentThread().setContextClassLoader(RuntimeServer.class.getClassLoader());
 
-        UUID grist = java.util.UUID.randomUUID();
-        String tmpDir = System.getProperty("java.io.tmpdir");
-        System.err.println( "tmpDir: " + tmpDir );
-        Path gristedTmp = Paths.get(tmpDir).resolve("wildfly-swarm-" + grist);
-        System.setProperty( "jboss.server.temp.dir", gristedTmp.toString() );
+        Path serverTmp = this.tempStorage.createTempDirectory("server");
+        System.err.println( "tmpDir: " + serverTmp + " (" + this.tempStorage + ")" );
+        System.setProperty( "jboss.server.temp.dir", serverTmp.toString() );
 
-        ScheduledExecutorService tempFileExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.executors = config.executors();
+
+        ScheduledExecutorService tempFileExecutor = this.executors.get(ExecutorTopology.SCHEDULED).scheduledExecutor();
         TempFileProvider tempFileProvider = TempFileProvider.create("wildfly-swarm", tempFileExecutor);
         List<ServiceActivator> activators = new ArrayList<>();
         activators.add(new ServiceActivator() {
@@ -152,6 +199,10 @@ public class RuntimeServer implements Server {
                     .install();
             }
         });
+        if (Timeline.isEnabled()) {
+            activators.add(new TimelineServiceActivator());
+        }
+        activators.add(this.failureMonitor);
 
         OUTER:
         for (ServerConfiguration eachConfig : this.configList) {
@@ -160,7 +211,11 @@ public class RuntimeServer implements Server {
             for (Fraction eachFraction : config.fractions()) {
                 if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
                     found = true;
-                    activators.addAll(eachConfig.getServiceActivators(eachFraction));
+                    if (!isLazilyActivated(eachConfig)) {
+                        long start = System.nanoTime();
+                        activators.addAll(eachConfig.getServiceActivators(eachFraction));
+                        this.timings.record(eachConfig.getType().getName(), "getServiceActivators", System.nanoTime() - start);
+                    }
                     break INNER;
                 }
             }
@@ -170,18 +225,23 @@ public class RuntimeServer implements Server {
         }
 
 
+        long bootStart = System.nanoTime();
         this.serviceContainer = this.container.start(list, this.contentProvider, activators);
-        for (ServiceName serviceName : this.serviceContainer.getServiceNames()) {
-            ServiceController<?> serviceController = this.serviceContainer.getService(serviceName);
-            if (serviceController.getStartException() != null) {
-                throw serviceController.getStartException();
-            }
-        }
+        this.timings.record(BootTimings.CONTAINER, "boot", System.nanoTime() - bootStart);
+        Timeline.end("container", "SelfContainedContainer.start", bootStart);
+        this.failureMonitor.checkBoot();
         ModelController controller = (ModelController) this.serviceContainer.getService(Services.JBOSS_SERVER_CONTROLLER).getValue();
-        Executor executor = Executors.newSingleThreadExecutor();
+        this.managementClient = new AsyncManagementClient(controller, this.executors.get(ExecutorTopology.MANAGEMENT).executor());
 
-        this.client = controller.createClient(executor);
-        this.deployer = new RuntimeDeployer(this.configList, this.client, this.contentProvider, tempFileProvider);
+        this.client = this.managementClient.getClient();
+        this.deployer = new RuntimeDeployer(this.configList, this.lazyFractions, this.client, this.contentProvider, this.tempStorage);
+
+        if (!this.lazyFractions.isEmpty()) {
+            Executor lazyExecutor = this.executors.get(ExecutorTopology.SCHEDULED).executor();
+            for (LazyFraction each : this.lazyFractions) {
+                each.install(this.serviceContainer, this.client, this.deployer, lazyExecutor);
+            }
+        }
 
         List<Archive> implicitDeployments = new ArrayList<>();
 
@@ -190,43 +250,113 @@ public class RuntimeServer implements Server {
             INNER:
             for (Fraction eachFraction : config.fractions()) {
                 if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
-                    implicitDeployments.addAll(eachConfig.getImplicitDeployments( eachFraction ) );
+                    if (!isLazilyActivated(eachConfig)) {
+                        long start = System.nanoTime();
+                        implicitDeployments.addAll(eachConfig.getImplicitDeployments( eachFraction ) );
+                        this.timings.record(eachConfig.getType().getName(), "getImplicitDeployments", System.nanoTime() - start);
+                    }
                     break INNER;
                 }
             }
         }
 
-        for (Archive each : implicitDeployments) {
-            this.deployer.deploy( each );
+        long deployStart = System.nanoTime();
+        this.deployer.deploy( implicitDeployments );
+        this.timings.record(BootTimings.CONTAINER, "deploy", System.nanoTime() - deployStart);
+
+        if (Boolean.getBoolean(BootTimings.PRINT_PROPERTY)) {
+            this.timings.print();
+            System.err.println("[TEMP] " + this.tempStorage + ": " + this.tempStorage.getUsage() + " bytes used, "
+                    + this.tempStorage.getUsableSpace() + " bytes free, " + this.tempStorage.getCreatedCount() + " created, "
+                    + this.tempStorage.getCleanedBytes() + " bytes of stale runs removed");
+            for (ExecutorTopology.Pool each : this.executors.pools()) {
+                System.err.println("[EXECUTOR] " + each);
+            }
+        }
+
+        Timeline.export();
+
+        if (Boolean.getBoolean(CDS_TRAINING)) {
+            System.err.println("[INFO] class-data-sharing training run complete, stopping");
+            stop();
+            return new DiscardingDeployer();
         }
 
         return this.deployer;
     }
 
-    private static class ExtensionOpPriorityComparator implements Comparator<ModelNode> {
-        @Override
-        public int compare(ModelNode left, ModelNode right) {
+    @Override
+    public ManagementClient getManagementClient() {
+        if (this.managementClient == null) {
+            throw new IllegalStateException("Container not started");
+        }
+        return this.managementClient;
+    }
 
-            PathAddress leftAddr = PathAddress.pathAddress(left.get(OP_ADDR));
-            PathAddress rightAddr = PathAddress.pathAddress(right.get(OP_ADDR));
+    /**
+     * @return the time spent by each fraction, and by the container, while starting.
+     */
+    public BootTimings getBootTimings() {
+        return this.timings;
+    }
 
-            String leftOpName = left.require(OP).asString();
-            String rightOpName = left.require(OP).asString();
+    /**
+     * @return where temporary files are stored, and how much space they use.
+     */
+    public TempStorage getTempStorage() {
+        return this.tempStorage;
+    }
 
-            if (leftAddr.size() == 1 && leftAddr.getElement(0).getKey().equals(EXTENSION) && leftOpName.equals(ADD)) {
-                return -1;
-            }
+    /**
+     * @return services which have failed to start and not since recovered.
+     */
+    public Map<ServiceName, StartException> getServiceFailures() {
+        return this.failureMonitor.getFailures();
+    }
 
-            if (rightAddr.size() == 1 && rightAddr.getElement(0).getKey().equals(EXTENSION) && rightOpName.equals(ADD)) {
-                return 1;
+    /**
+     * Configure a lazily-activated fraction now, if it has not been already.
+     *
+     * @param fractionType the type of fraction
+     */
+    public void activate(Class<? extends Fraction> fractionType) throws Exception {
+        for (LazyFraction each : this.lazyFractions) {
+            if (each.getConfiguration().getType().isAssignableFrom(fractionType)) {
+                each.activate();
             }
+        }
+    }
 
-            return 0;
+    private boolean isLazilyActivated(ServerConfiguration config) {
+        for (LazyFraction each : this.lazyFractions) {
+            if (each.getConfiguration() == config) {
+                return true;
+            }
         }
+        return false;
     }
 
+    private boolean isLazy(ServerConfiguration config) {
+        if (config.isLazy()) {
+            return true;
+        }
+        String lazy = System.getProperty(LAZY_FRACTIONS);
+        if (lazy == null) {
+            return false;
+        }
+        for (String each : lazy.split(",")) {
+            each = each.trim();
+            if (each.equals(config.getType().getName()) || each.equals(config.getType().getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     public void stop() throws Exception {
+        if (this.serviceContainer == null) {
+            return;
+        }
 
         final CountDownLatch latch = new CountDownLatch(1);
         this.serviceContainer.addTerminateListener(new ServiceContainer.TerminateListener() {
@@ -240,8 +370,11 @@ public class RuntimeServer implements Server {
         latch.await();
 
         this.deployer.stop();
+        this.executors.shutdown();
         this.serviceContainer = null;
         this.client = null;
+        this.managementClient = null;
+        this.executors = null;
         this.deployer = null;
     }
 
@@ -312,15 +445,52 @@ public class RuntimeServer implements Server {
         }
     }
 
-    private List<ModelNode> getList(Container config) throws Exception {
+    /**
+     * @return the boot operations, or {@code null} if they were only to be compiled.
+     */
+    private List<ModelNode> getBootOperations(Container config) throws Exception {
+        String compileTo = System.getProperty(BOOT_PLAN_COMPILE);
+        boolean replay = compileTo == null && Boolean.getBoolean(BOOT_PLAN);
+        String fingerprint = (compileTo != null || replay) ? CompiledBootPlan.fingerprint(config) : null;
+
+        if (replay) {
+            long start = System.nanoTime();
+            List<ModelNode> list;
+            try {
+                list = CompiledBootPlan.load(fingerprint);
+            } catch (IOException e) {
+                System.err.println("[WARN] unable to read compiled boot plan, building it instead: " + e);
+                list = null;
+            }
+            if (list != null) {
+                // only registers lazy fractions; their operations are not part of the compiled plan
+                configureFractions(config, null);
+                this.timings.record(BootTimings.CONTAINER, "loadCompiledBootPlan", System.nanoTime() - start);
+                return list;
+            }
+        }
+
+        List<ModelNode> list = getBootPlan(config).toList();
+
+        if (compileTo != null) {
+            CompiledBootPlan.write(Paths.get(compileTo), fingerprint, list);
+            System.err.println("[INFO] " + list.size() + " boot operations written to " + compileTo + ", not starting");
+            return null;
+        }
+
+        return list;
+    }
+
+    private BootPlan getBootPlan(Container config) throws Exception {
         List<ModelNode> list = new ArrayList<>();
 
         configureInterfaces(config, list);
         configureSocketBindingGroups(config, list);
 
-        configureFractions(config, list);
+        BootPlan plan = new BootPlan().add(list);
+        configureFractions(config, plan);
 
-        return list;
+        return plan;
     }
 
     private void configureInterfaces(Container config, List<ModelNode> list) {
@@ -388,7 +558,10 @@ public class RuntimeServer implements Server {
         list.add(node);
     }
 
-    private void configureFractions(Container config, List<ModelNode> list) throws Exception {
+    /**
+     * @param plan to which to add the operations of each fraction, or {@code null} to only register lazy fractions.
+     */
+    private void configureFractions(Container config, BootPlan plan) throws Exception {
 
         OUTER:
         for (ServerConfiguration eachConfig : this.configList) {
@@ -397,7 +570,13 @@ public class RuntimeServer implements Server {
             for (Fraction eachFraction : config.fractions()) {
                 if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
                     found = true;
-                    list.addAll(eachConfig.getList(eachFraction));
+                    if (isLazy(eachConfig) && LazyFraction.isActivatableAtRuntime(eachConfig, eachFraction)) {
+                        this.lazyFractions.add(new LazyFraction(eachConfig, eachFraction));
+                    } else if (plan != null) {
+                        long start = System.nanoTime();
+                        plan.add(eachConfig.getList(eachFraction));
+                        this.timings.record(eachConfig.getType().getName(), "getList", System.nanoTime() - start);
+                    }
                     break INNER;
                 }
             }
@@ -423,4 +602,21 @@ public class RuntimeServer implements Server {
         */
     }
 
+    /**
+     * Returned when the container is not left running, so that the application's {@code main()}
+     * completes, and the process exits, without deploying anything.
+     */
+    private static class DiscardingDeployer implements Deployer {
+        @Override
+        public void deploy(Archive deployment) {
+        }
+
+        @Override
+        public void undeploy(String name) {
+        }
+
+        @Override
+        public void redeploy(Archive deployment) {
+        }
+    }
 }
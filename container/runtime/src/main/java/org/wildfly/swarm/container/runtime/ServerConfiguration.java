@@ -52,4 +52,27 @@ public interface ServerConfiguration<T extends Fraction> {
         return false;
     }
 
+    /**
+     * Whether the subsystem should be configured on first use rather than at boot.
+     *
+     * <p>May also be enabled for any fraction using the {@code swarm.fractions.lazy} system property.</p>
+     *
+     * @see LazyFraction
+     */
+    default boolean isLazy() {
+        return false;
+    }
+
+    /**
+     * Whether a deployment requires this fraction, so that it is activated before
+     * the deployment is added, if {@link #isLazy() lazy}.
+     *
+     * <p>Lazy fractions not needed by any deployment are only activated on demand.</p>
+     *
+     * @see LazyFraction
+     */
+    default boolean isNeededBy(Archive<?> deployment) {
+        return false;
+    }
+
 }
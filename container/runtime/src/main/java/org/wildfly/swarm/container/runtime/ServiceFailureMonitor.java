@@ -0,0 +1,109 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.msc.service.AbstractServiceListener;
+import org.jboss.msc.service.ServiceActivator;
+import org.jboss.msc.service.ServiceActivatorContext;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceRegistryException;
+import org.jboss.msc.service.StartException;
+
+/**
+ * Collects service start failures as they happen.
+ *
+ * <p>Installed as a listener on the service container while it boots, so that
+ * failures are known without walking the whole registry afterwards. Failures
+ * occurring once the container has started, such as while deploying, are
+ * reported as they happen.</p>
+ */
+class ServiceFailureMonitor implements ServiceActivator {
+
+    private final Map<ServiceName, StartException> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private volatile boolean booted;
+
+    @Override
+    public void activate(ServiceActivatorContext context) throws ServiceRegistryException {
+        if (context.getServiceRegistry() instanceof ServiceContainer) {
+            ((ServiceContainer) context.getServiceRegistry()).addListener(new FailureListener());
+        } else {
+            context.getServiceTarget().addListener(new FailureListener());
+        }
+    }
+
+    /**
+     * Throw the first failure recorded while booting, if any, with the others suppressed.
+     */
+    void checkBoot() throws StartException {
+        this.booted = true;
+
+        List<Map.Entry<ServiceName, StartException>> failed;
+        synchronized (this.failures) {
+            failed = new ArrayList<>(this.failures.entrySet());
+        }
+        if (failed.isEmpty()) {
+            return;
+        }
+
+        StartException first = failed.get(0).getValue();
+        StartException e = new StartException(report(failed), first);
+        for (int i = 1; i < failed.size(); ++i) {
+            e.addSuppressed(failed.get(i).getValue());
+        }
+        throw e;
+    }
+
+    Map<ServiceName, StartException> getFailures() {
+        synchronized (this.failures) {
+            return new LinkedHashMap<>(this.failures);
+        }
+    }
+
+    private static String report(List<Map.Entry<ServiceName, StartException>> failed) {
+        StringBuilder report = new StringBuilder();
+        report.append(failed.size()).append(" service(s) failed to start:");
+        for (Map.Entry<ServiceName, StartException> each : failed) {
+            report.append("\n  ").append(each.getKey().getCanonicalName())
+                    .append(": ").append(each.getValue().getMessage());
+        }
+        return report.toString();
+    }
+
+    private class FailureListener extends AbstractServiceListener<Object> {
+        @Override
+        public void transition(ServiceController<?> controller, ServiceController.Transition transition) {
+            if (transition == ServiceController.Transition.STARTING_to_START_FAILED) {
+                StartException e = controller.getStartException();
+                failures.put(controller.getName(), e);
+                if (booted) {
+                    System.err.println("[ERROR] " + controller.getName().getCanonicalName() + " failed to start: " + e.getMessage());
+                }
+            } else if (transition == ServiceController.Transition.START_FAILED_to_STARTING
+                    || transition == ServiceController.Transition.START_FAILED_to_DOWN) {
+                failures.remove(controller.getName());
+            }
+        }
+    }
+}
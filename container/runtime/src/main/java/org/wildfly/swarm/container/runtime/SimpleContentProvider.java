@@ -15,37 +15,323 @@
  */
 package org.wildfly.swarm.container.runtime;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.jboss.as.selfcontained.ContentProvider;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.vfs.VFS;
 import org.jboss.vfs.VirtualFile;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
 
 /**
+ * Content repository for the self-contained server.
+ *
+ * <p>Content is identified by the SHA-1 of the archive's paths and assets, computed while
+ * streaming them. Each deployment is mounted at its own name, but deployments of identical
+ * content share a single {@link ArchiveFileSystem}, which is reference-counted and closed
+ * once its last deployment has been removed.</p>
+ *
+ * <p>The self-contained server only resolves one-byte hashes, so each hash handed out is
+ * the slot the content occupies, and the SHA-1 is used only to find identical content. Slots
+ * are re-used once released, allowing any number of deployments over time, up to 256 at once.</p>
+ *
  * @author Bob McWhirter
  */
 public class SimpleContentProvider implements ContentProvider {
 
-    private List<VirtualFile> contents = new ArrayList<>();
+    private static final int MAX_SLOTS = 256;
+
+    private final Entry[] slots = new Entry[MAX_SLOTS];
 
+    private final Map<String, Shared> bySha1 = new HashMap<>();
 
     public SimpleContentProvider() {
 
     }
 
+    /**
+     * Add content which is already mounted, without de-duplication.
+     *
+     * @return the hash by which the content may be deployed.
+     */
     public synchronized byte[] addContent(VirtualFile content) {
-        this.contents.add(content);
-        byte[] hash = new byte[1];
-        hash[0] = (byte) (this.contents.size() - 1);
-        return hash;
+        Entry entry = new Entry(content, null, null);
+        allocate(entry);
+        return entry.hash;
+    }
+
+    /**
+     * Mount an archive at its own name, sharing the file-system of identical content if already present.
+     *
+     * @param archive the archive
+     * @param entries the digest of each entry of the archive, as returned by {@link #digest(Archive)}
+     * @param storage where the file-system writes physical files, if one is created
+     * @return the hash by which the content may be deployed.
+     */
+    byte[] addContent(Archive<?> archive, Map<String, byte[]> entries, TempStorage storage) throws IOException {
+        byte[] sha1 = sha1(entries);
+        String key = toHex(sha1);
+        VirtualFile mountPoint = VFS.getRootVirtualFile().getChild(archive.getName());
+
+        synchronized (this) {
+            Shared shared = this.bySha1.get(key);
+            boolean created = (shared == null);
+            if (created) {
+                shared = new Shared(sha1, new ArchiveFileSystem(archive, storage));
+            }
+            Closeable mount = null;
+            try {
+                mount = VFS.mount(mountPoint, shared.fileSystem.view(archive.getName()));
+                Entry entry = new Entry(mountPoint, mount, shared);
+                allocate(entry);
+                if (created) {
+                    this.bySha1.put(key, shared);
+                }
+                ++shared.references;
+                return entry.hash;
+            } catch (IOException | RuntimeException e) {
+                // nothing refers to the mount or a new file-system yet
+                if (mount != null) {
+                    closeQuietly(mount, e);
+                }
+                if (created) {
+                    closeQuietly(shared.fileSystem, e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable, Exception failure) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @param hash as returned when the content was added
+     * @return the file-system backing the content, or {@code null} if the content was already mounted when added.
+     */
+    synchronized ArchiveFileSystem getFileSystem(byte[] hash) {
+        Entry entry = lookup(hash);
+        return (entry == null || entry.shared == null) ? null : entry.shared.fileSystem;
+    }
+
+    /**
+     * Record that the file-system backing the content has been given a new archive.
+     *
+     * @param hash    as returned when the content was added
+     * @param entries the digest of each entry of the new content
+     */
+    synchronized void updateContent(byte[] hash, Map<String, byte[]> entries) {
+        Entry entry = lookup(hash);
+        if (entry == null || entry.shared == null) {
+            return;
+        }
+        Shared shared = entry.shared;
+        this.bySha1.remove(toHex(shared.sha1), shared);
+        shared.sha1 = sha1(entries);
+        this.bySha1.putIfAbsent(toHex(shared.sha1), shared);
+    }
+
+    /**
+     * @param hash as returned when the content was added
+     * @return the number of deployments sharing the file-system backing the content.
+     */
+    synchronized int getReferences(byte[] hash) {
+        Entry entry = lookup(hash);
+        if (entry == null) {
+            return 0;
+        }
+        return entry.shared == null ? 1 : entry.shared.references;
+    }
+
+    /**
+     * Release content previously added, unmounting it, and closing its file-system if no longer shared.
+     *
+     * @param hash as returned when the content was added
+     * @return {@code true} if the content was present.
+     */
+    public boolean removeContent(byte[] hash) throws IOException {
+        Entry entry;
+        boolean last = false;
+        synchronized (this) {
+            entry = lookup(hash);
+            if (entry == null) {
+                return false;
+            }
+            this.slots[entry.slot] = null;
+            if (entry.shared != null && --entry.shared.references == 0) {
+                this.bySha1.remove(toHex(entry.shared.sha1), entry.shared);
+                last = true;
+            }
+        }
+        if (entry.mount != null) {
+            entry.mount.close();
+        }
+        if (last) {
+            entry.shared.fileSystem.close();
+        }
+        return true;
+    }
+
+    /**
+     * Unmount all content.
+     */
+    public void close() {
+        Entry[] entries;
+        Collection<Shared> shared;
+        synchronized (this) {
+            entries = this.slots.clone();
+            Arrays.fill(this.slots, null);
+            shared = new ArrayList<>(this.bySha1.values());
+            this.bySha1.clear();
+        }
+        for (Entry each : entries) {
+            if (each != null && each.mount != null) {
+                try {
+                    each.mount.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        for (Shared each : shared) {
+            try {
+                each.fileSystem.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
     }
 
     @Override
-    public VirtualFile getContent(int index) {
-        if (index >= this.contents.size()) {
+    public synchronized VirtualFile getContent(int index) {
+        Entry entry = this.slots[index & 0xFF];
+        if (entry == null) {
+            return null;
+        }
+        return entry.content;
+    }
+
+    private Entry lookup(byte[] hash) {
+        Entry entry = this.slots[hash[0] & 0xFF];
+        if (entry == null || !Arrays.equals(entry.hash, hash)) {
             return null;
         }
+        return entry;
+    }
+
+    private void allocate(Entry entry) {
+        for (int i = 0; i < MAX_SLOTS; ++i) {
+            if (this.slots[i] == null) {
+                this.slots[i] = entry;
+                entry.slot = i;
+                entry.hash = new byte[]{(byte) i};
+                return;
+            }
+        }
+        throw new IllegalStateException("No more than " + MAX_SLOTS + " contents may be deployed at once");
+    }
+
+    /**
+     * Digest each entry of an archive, streaming its assets.
+     *
+     * @return the SHA-1 of each asset, or an empty array for directories, sorted by path.
+     */
+    public static Map<String, byte[]> digest(Archive<?> archive) throws IOException {
+        MessageDigest digest = newDigest();
+        Map<String, byte[]> entries = new TreeMap<>();
+
+        byte[] buf = new byte[8192];
+        for (Map.Entry<ArchivePath, Node> each : archive.getContent().entrySet()) {
+            Asset asset = each.getValue().getAsset();
+            if (asset == null) {
+                entries.put(each.getKey().get(), new byte[0]);
+                continue;
+            }
+            try (InputStream in = asset.openStream()) {
+                int len;
+                while ((len = in.read(buf)) >= 0) {
+                    digest.update(buf, 0, len);
+                }
+            }
+            entries.put(each.getKey().get(), digest.digest());
+        }
+        return entries;
+    }
+
+    private static byte[] sha1(Map<String, byte[]> entries) {
+        MessageDigest digest = newDigest();
+        // sorted, so that the same content hashes the same regardless of the order it was added in
+        for (Map.Entry<String, byte[]> each : new TreeMap<>(entries).entrySet()) {
+            digest.update(each.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(each.getValue());
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        return this.contents.get(index);
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    private static class Entry {
+        private final VirtualFile content;
+
+        private final Closeable mount;
+
+        private final Shared shared;
+
+        private byte[] hash;
+
+        private int slot;
+
+        Entry(VirtualFile content, Closeable mount, Shared shared) {
+            this.content = content;
+            this.mount = mount;
+            this.shared = shared;
+        }
+    }
+
+    private static class Shared {
+        private final ArchiveFileSystem fileSystem;
+
+        private byte[] sha1;
+
+        private int references;
+
+        Shared(byte[] sha1, ArchiveFileSystem fileSystem) {
+            this.sha1 = sha1;
+            this.fileSystem = fileSystem;
+        }
     }
 }
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.msc.service.AbstractServiceListener;
+import org.jboss.msc.service.ServiceActivator;
+import org.jboss.msc.service.ServiceActivatorContext;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceRegistryException;
+import org.wildfly.swarm.bootstrap.util.Timeline;
+
+/**
+ * Records the start of each MSC service on the startup {@link Timeline}.
+ *
+ * <p>The listener is added to the service container itself, so that it sees
+ * every service installed after the container has begun booting, including
+ * those installed by subsystems.</p>
+ */
+class TimelineServiceActivator implements ServiceActivator {
+
+    @Override
+    public void activate(ServiceActivatorContext context) throws ServiceRegistryException {
+        if (context.getServiceRegistry() instanceof ServiceContainer) {
+            ((ServiceContainer) context.getServiceRegistry()).addListener(new TimelineListener());
+        } else {
+            context.getServiceTarget().addListener(new TimelineListener());
+        }
+    }
+
+    private static class TimelineListener extends AbstractServiceListener<Object> {
+
+        private final Map<ServiceController<?>, Long> starting = new ConcurrentHashMap<>();
+
+        @Override
+        public void transition(ServiceController<?> controller, ServiceController.Transition transition) {
+            switch (transition) {
+                case START_INITIATING_to_STARTING:
+                    this.starting.put(controller, Timeline.start());
+                    break;
+                case STARTING_to_UP:
+                case STARTING_to_START_FAILED:
+                    Long start = this.starting.remove(controller);
+                    if (start != null) {
+                        Timeline.end("msc", controller.getName().getCanonicalName(), start);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
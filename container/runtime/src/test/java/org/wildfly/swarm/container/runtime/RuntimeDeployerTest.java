@@ -0,0 +1,196 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.function.Consumer;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.vfs.VFS;
+import org.jboss.vfs.VirtualFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wildfly.swarm.bootstrap.util.TempStorage;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.DEPLOY;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OUTCOME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.REMOVE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUCCESS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.UNDEPLOY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RuntimeDeployerTest {
+
+    private final List<String> operations = new ArrayList<>();
+
+    private Consumer<String> onExecute = (op) -> {
+    };
+
+    private RuntimeDeployer deployer;
+
+    @Before
+    public void setUp() throws IOException {
+        ModelControllerClient client = (ModelControllerClient) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[]{ModelControllerClient.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("execute") || !(args[0] instanceof ModelNode)) {
+                        return null;
+                    }
+                    String op = ((ModelNode) args[0]).get(OP).asString();
+                    this.onExecute.accept(op);
+                    this.operations.add(op);
+                    ModelNode result = new ModelNode();
+                    result.get(OUTCOME).set(SUCCESS);
+                    return result;
+                });
+        this.deployer = new RuntimeDeployer(Collections.emptyList(), Collections.emptyList(), client, new SimpleContentProvider(), TempStorage.getInstance());
+    }
+
+    @After
+    public void tearDown() {
+        this.deployer.stop();
+    }
+
+    @Test
+    public void testDiff() {
+        Map<String, byte[]> current = new HashMap<>();
+        current.put("/index.html", new byte[]{1});
+        current.put("/same.html", new byte[]{2});
+        current.put("/removed.html", new byte[]{3});
+
+        Map<String, byte[]> replacement = new HashMap<>();
+        replacement.put("/index.html", new byte[]{4});
+        replacement.put("/same.html", new byte[]{2});
+        replacement.put("/added.html", new byte[]{5});
+
+        assertEquals(new HashSet<>(Arrays.asList("/index.html", "/removed.html", "/added.html")),
+                RuntimeDeployer.diff(current, replacement));
+        assertTrue(RuntimeDeployer.diff(current, current).isEmpty());
+    }
+
+    @Test
+    public void testRequiresRestart() {
+        assertTrue(RuntimeDeployer.requiresRestart("/WEB-INF/web.xml"));
+        assertTrue(RuntimeDeployer.requiresRestart("/META-INF/MANIFEST.MF"));
+        assertTrue(RuntimeDeployer.requiresRestart("/org/example/Foo.class"));
+        assertTrue(RuntimeDeployer.requiresRestart("/lib/foo.jar"));
+        assertFalse(RuntimeDeployer.requiresRestart("/index.html"));
+        assertFalse(RuntimeDeployer.requiresRestart("/css/site.css"));
+    }
+
+    @Test
+    public void testRedeployStaticContent() throws IOException {
+        this.deployer.deploy(archive("static.war", "one", "a"));
+        assertEquals(Collections.singletonList(ADD), this.operations);
+
+        this.deployer.redeploy(archive("static.war", "two", "a"));
+        assertEquals(Collections.singletonList(ADD), this.operations);
+        assertEquals("two", read(VFS.getChild("static.war/index.html")));
+
+        this.deployer.redeploy(archive("static.war", "two", "a"));
+        assertEquals(Collections.singletonList(ADD), this.operations);
+    }
+
+    @Test
+    public void testRedeployStopsBeforeReplacing() throws IOException {
+        this.deployer.deploy(archive("restart.war", "one", "a"));
+        File before = VFS.getChild("restart.war/WEB-INF/lib/lib.jar").getPhysicalFile();
+        assertEquals("a", new String(Files.readAllBytes(before.toPath()), StandardCharsets.UTF_8));
+
+        this.onExecute = (op) -> {
+            if (op.equals(UNDEPLOY)) {
+                // the stopping deployment still sees its own files
+                assertTrue(before.exists());
+                assertEquals("a", read(VFS.getChild("restart.war/WEB-INF/lib/lib.jar")));
+            }
+        };
+        this.deployer.redeploy(archive("restart.war", "one", "b"));
+        assertEquals(Arrays.asList(ADD, UNDEPLOY, DEPLOY), this.operations);
+
+        File after = VFS.getChild("restart.war/WEB-INF/lib/lib.jar").getPhysicalFile();
+        assertNotEquals(before, after);
+        assertFalse(before.exists());
+        assertEquals("b", new String(Files.readAllBytes(after.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIdenticalContentMountedAtOwnName() throws IOException {
+        this.deployer.deploy(archive("first.war", "same", "a"));
+        this.deployer.deploy(archive("second.war", "same", "a"));
+
+        VirtualFile second = VFS.getChild("second.war");
+        assertTrue(second.exists());
+        assertEquals("same", read(second.getChild("index.html")));
+
+        this.deployer.undeploy("first.war");
+        assertFalse(VFS.getChild("first.war/index.html").exists());
+        assertEquals("same", read(second.getChild("index.html")));
+
+        this.deployer.deploy(archive("first.war", "same", "a"));
+        assertEquals("same", read(VFS.getChild("first.war/index.html")));
+        assertEquals(Arrays.asList(ADD, ADD, REMOVE, ADD), this.operations);
+    }
+
+    @Test
+    public void testRedeploySharedContentDeploysAfresh() throws IOException {
+        this.deployer.deploy(archive("left.war", "same", "a"));
+        this.deployer.deploy(archive("right.war", "same", "a"));
+
+        this.deployer.redeploy(archive("right.war", "changed", "a"));
+        assertEquals(Arrays.asList(ADD, ADD, REMOVE, ADD), this.operations);
+        assertEquals("same", read(VFS.getChild("left.war/index.html")));
+        assertEquals("changed", read(VFS.getChild("right.war/index.html")));
+    }
+
+    private static JavaArchive archive(String name, String page, String lib) {
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+        archive.add(new StringAsset(page), "index.html");
+        archive.add(new StringAsset(lib), "WEB-INF/lib/lib.jar");
+        return archive;
+    }
+
+    private static String read(VirtualFile file) {
+        try (InputStream in = file.openStream(); Scanner scanner = new Scanner(in, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
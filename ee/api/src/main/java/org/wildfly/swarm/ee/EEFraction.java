@@ -22,6 +22,7 @@ import org.wildfly.swarm.config.ee.ManagedExecutorService;
 import org.wildfly.swarm.config.ee.ManagedScheduledExecutorService;
 import org.wildfly.swarm.config.ee.ManagedThreadFactory;
 import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.Fraction;
 
 /**
@@ -48,8 +49,6 @@ public class EEFraction extends EE<EEFraction> implements Fraction {
                         .jndiName(CONCURRENCY_EXECUTOR_DEFAULT)
                         .contextService(DEFAULT_KEY)
                         .hungTaskThreshold(60000L)
-                        .coreThreads(5)
-                        .maxThreads(25)
                         .keepaliveTime(5000L))
                 .managedScheduledExecutorService(new ManagedScheduledExecutorService(DEFAULT_KEY)
                         .jndiName(CONCURRENCY_SCHEDULER_DEFAULT)
@@ -70,5 +69,18 @@ public class EEFraction extends EE<EEFraction> implements Fraction {
             this.defaultBindingsService()
                     .jmsConnectionFactory( "java:jboss/DefaultJMSConnectionFactory" );
         }
+
+        ExecutorTopology executors = initContext.executors();
+        subresources().managedExecutorServices().stream()
+                .filter((e) -> e.getKey().equals(DEFAULT_KEY))
+                .findFirst()
+                .ifPresent((executor) -> {
+                    if (executor.maxThreads() == null) {
+                        executor.maxThreads(executors.maxThreads(ExecutorTopology.EE));
+                    }
+                    if (executor.coreThreads() == null) {
+                        executor.coreThreads(Math.min(5, executor.maxThreads()));
+                    }
+                });
     }
 }
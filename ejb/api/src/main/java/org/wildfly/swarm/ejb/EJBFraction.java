@@ -26,6 +26,7 @@ import org.wildfly.swarm.config.security.SecurityDomain;
 import org.wildfly.swarm.config.security.security_domain.ClassicAuthorization;
 import org.wildfly.swarm.config.security.security_domain.authorization.PolicyModule;
 import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.Fraction;
 import org.wildfly.swarm.security.SecurityFraction;
 
@@ -38,10 +39,27 @@ import java.util.Map;
  */
 public class EJBFraction extends Ejb3<EJBFraction> implements Fraction {
 
+    private boolean elasticAsync;
+
     protected EJBFraction() {
 
     }
 
+    /**
+     * Size the default thread pool, running asynchronous invocations and timers, from the
+     * {@link ExecutorTopology#ELASTIC elastic} pool rather than the {@link ExecutorTopology#EJB EJB} one.
+     *
+     * <p>Suited to asynchronous methods which mostly block. Idle threads are reclaimed after 100ms.</p>
+     */
+    public EJBFraction elasticAsync() {
+        this.elasticAsync = true;
+        return this;
+    }
+
+    public boolean isElasticAsync() {
+        return this.elasticAsync;
+    }
+
     @Override
     public void postInitialize(Container.PostInitContext initContext) {
         SecurityFraction security = (SecurityFraction) initContext.fraction("security");
@@ -59,6 +77,16 @@ public class EJBFraction extends Ejb3<EJBFraction> implements Fraction {
         }
 
         System.err.println("found security: " + security);
+
+        ExecutorTopology executors = initContext.executors();
+        subresources().threadPools().stream()
+                .filter((e) -> e.getKey().equals("default"))
+                .findFirst()
+                .ifPresent((pool) -> {
+                    if (pool.maxThreads() == null) {
+                        pool.maxThreads(executors.maxThreads(this.elasticAsync ? ExecutorTopology.ELASTIC : ExecutorTopology.EJB));
+                    }
+                });
     }
 
     public static EJBFraction createDefaultFraction() {
@@ -92,7 +120,6 @@ public class EJBFraction extends Ejb3<EJBFraction> implements Fraction {
                                 .path("timer-service-data")
                                 .relativeTo("jboss.server.data.dir")))
                 .threadPool(new ThreadPool("default")
-                        .maxThreads(10)
                         .keepaliveTime(threadPoolSettings));
 
         return fraction;
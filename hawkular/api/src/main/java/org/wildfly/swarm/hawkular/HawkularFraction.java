@@ -18,6 +18,8 @@ package org.wildfly.swarm.hawkular;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.Fraction;
 
 /**
@@ -31,6 +33,7 @@ public class HawkularFraction implements Fraction {
     private String password;
     private String host = "localhost";
     private int port = 8080;
+    private Integer schedulerThreads;
 
     private List<ResourceTypeSet> resourceTypeSets = new ArrayList<>();
 
@@ -83,6 +86,25 @@ public class HawkularFraction implements Fraction {
         return this.port;
     }
 
+    public HawkularFraction schedulerThreads(int schedulerThreads) {
+        this.schedulerThreads = schedulerThreads;
+        return this;
+    }
+
+    /**
+     * @return the number of threads collecting each of metrics and availability.
+     */
+    public Integer schedulerThreads() {
+        return this.schedulerThreads;
+    }
+
+    @Override
+    public void postInitialize(Container.PostInitContext initContext) {
+        if (this.schedulerThreads == null) {
+            this.schedulerThreads = initContext.executors().maxThreads(ExecutorTopology.METRICS);
+        }
+    }
+
     public HawkularFraction resourceTypeSet(ResourceTypeSet resourceTypeSet) {
         this.resourceTypeSets.add( resourceTypeSet );
         return this;
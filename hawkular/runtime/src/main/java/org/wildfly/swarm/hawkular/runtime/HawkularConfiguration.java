@@ -88,8 +88,9 @@ public class HawkularConfiguration extends AbstractServerConfiguration<HawkularF
         node.get(OP_ADDR).set(this.address.toModelNode());
         node.get(OP).set(ADD);
         node.get("apiJndiName").set("java:global/hawkular/agent/monitor/api");
-        node.get("numMetricSchedulerThreads").set(3);
-        node.get("numAvailSchedulerThreads").set(3);
+        int schedulerThreads = fraction.schedulerThreads() == null ? 3 : fraction.schedulerThreads();
+        node.get("numMetricSchedulerThreads").set(schedulerThreads);
+        node.get("numAvailSchedulerThreads").set(schedulerThreads);
         node.get("enabled").set(true);
         list.add(node);
 
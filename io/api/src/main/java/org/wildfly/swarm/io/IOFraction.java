@@ -18,6 +18,8 @@ package org.wildfly.swarm.io;
 import org.wildfly.swarm.config.IO;
 import org.wildfly.swarm.config.io.BufferPool;
 import org.wildfly.swarm.config.io.Worker;
+import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.Fraction;
 
 /**
@@ -33,4 +35,23 @@ public class IOFraction extends IO<IOFraction> implements Fraction {
 
 
     }
+
+    /**
+     * Size the default worker from the container's executor topology, unless set explicitly.
+     */
+    @Override
+    public void postInitialize(Container.PostInitContext initContext) {
+        ExecutorTopology executors = initContext.executors();
+        subresources().workers().stream()
+                .filter((e) -> e.getKey().equals("default"))
+                .findFirst()
+                .ifPresent((worker) -> {
+                    if (worker.ioThreads() == null) {
+                        worker.ioThreads(executors.maxThreads(ExecutorTopology.IO));
+                    }
+                    if (worker.taskMaxThreads() == null) {
+                        worker.taskMaxThreads(executors.maxThreads(ExecutorTopology.BLOCKING));
+                    }
+                });
+    }
 }
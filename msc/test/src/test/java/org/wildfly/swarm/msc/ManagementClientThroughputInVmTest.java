@@ -0,0 +1,75 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.msc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ManagementClient;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Throughput of management operations issued one at a time, and pipelined.
+ */
+public class ManagementClientThroughputInVmTest {
+
+    private static final int OPERATIONS = 2000;
+
+    private static final String READ_RESOURCE = "{\"operation\":\"read-resource\",\"address\":[]}";
+
+    @Test
+    public void testThroughput() throws Exception {
+        Container container = new Container();
+        container.fraction(new MSCFraction());
+        container.start();
+        try {
+            ManagementClient client = container.managementClient();
+
+            List<String> operations = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS; ++i) {
+                operations.add(READ_RESOURCE);
+            }
+
+            // warm up
+            client.executeAll(operations).get();
+
+            long start = System.nanoTime();
+            for (String each : operations) {
+                assertTrue(client.execute(each).get().contains("\"success\""));
+            }
+            report("sequential", System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<String> results = client.executeAll(operations).get();
+            report("pipelined", System.nanoTime() - start);
+
+            for (String each : results) {
+                assertTrue(each.contains("\"success\""));
+            }
+        } finally {
+            container.stop();
+        }
+    }
+
+    private static void report(String mode, long nanos) {
+        System.err.println(String.format(Locale.ROOT, "%s: %d operations in %.1fms, %.0f ops/s",
+                mode, OPERATIONS, nanos / 1000000.0, OPERATIONS / (nanos / 1000000000.0)));
+    }
+}
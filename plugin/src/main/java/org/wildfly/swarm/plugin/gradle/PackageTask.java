@@ -30,6 +30,7 @@ import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.bundling.Jar;
 import org.wildfly.swarm.tools.BuildTool;
 
+import java.nio.file.Paths;
 import java.util.Set;
 
 /**
@@ -86,6 +87,26 @@ public class PackageTask extends DefaultTask {
             this.tool.bundleDependencies(bundleDependencies);
         }
 
+        Boolean incremental = ext.getIncremental();
+        if(incremental != null) {
+            this.tool.incremental(incremental);
+        }
+
+        Integer compressionLevel = ext.getCompressionLevel();
+        if(compressionLevel != null) {
+            this.tool.compressionLevel(compressionLevel);
+        }
+
+        Boolean thin = ext.getThin();
+        if(thin != null) {
+            this.tool.thin(thin);
+        }
+
+        String artifactStore = ext.getArtifactStore();
+        if(artifactStore != null) {
+            this.tool.artifactStore(Paths.get(artifactStore));
+        }
+
         this.tool.build(project.getName(), project.getBuildDir().toPath().resolve( "libs" ));
     }
 
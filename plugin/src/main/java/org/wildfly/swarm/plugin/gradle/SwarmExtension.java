@@ -30,6 +30,10 @@ public class SwarmExtension {
     private String bindAddress;
     private String contextPath;
     private Boolean bundleDependencies;
+    private Boolean incremental;
+    private Integer compressionLevel;
+    private Boolean thin;
+    private String artifactStore;
 
     private Properties properties = new Properties();
 
@@ -87,4 +91,36 @@ public class SwarmExtension {
     public void setBundleDependencies(Boolean bundleDependencies) {
         this.bundleDependencies = bundleDependencies;
     }
+
+    public Boolean getIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public Integer getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(Integer compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public Boolean getThin() {
+        return thin;
+    }
+
+    public void setThin(Boolean thin) {
+        this.thin = thin;
+    }
+
+    public String getArtifactStore() {
+        return artifactStore;
+    }
+
+    public void setArtifactStore(String artifactStore) {
+        this.artifactStore = artifactStore;
+    }
 }
@@ -77,6 +77,24 @@ public class PackageMojo extends AbstractMojo { //extends AbstractSwarmMojo {
     @Parameter(alias = "bundleDependencies", defaultValue = "true")
     private boolean bundleDependencies;
 
+    @Parameter(alias = "classDataSharing", defaultValue = "false")
+    private boolean classDataSharing;
+
+    @Parameter(alias = "compileBootPlan", defaultValue = "false")
+    private boolean compileBootPlan;
+
+    @Parameter(alias = "incremental", defaultValue = "false")
+    private boolean incremental;
+
+    @Parameter(alias = "compressionLevel", defaultValue = "-1")
+    private int compressionLevel;
+
+    @Parameter(alias = "thin", defaultValue = "false")
+    private boolean thin;
+
+    @Parameter(alias = "artifactStore")
+    private String artifactStore;
+
     @Parameter(alias = "mainClass")
     private String mainClass;
 
@@ -176,7 +194,16 @@ public class PackageMojo extends AbstractMojo { //extends AbstractSwarmMojo {
         this.tool
                 .properties(this.properties)
                 .mainClass(this.mainClass)
-                .contextPath(this.contextPath);
+                .contextPath(this.contextPath)
+                .classDataSharing(this.classDataSharing)
+                .compileBootPlan(this.compileBootPlan)
+                .incremental(this.incremental)
+                .compressionLevel(this.compressionLevel)
+                .thin(this.thin);
+
+        if (this.artifactStore != null) {
+            this.tool.artifactStore(Paths.get(this.artifactStore));
+        }
 
         MavenArtifactResolvingHelper resolvingHelper = new MavenArtifactResolvingHelper(this.resolver, this.repositorySystemSession);
         for (ArtifactRepository each : this.remoteRepositories) {
@@ -16,6 +16,8 @@
 
 package org.wildfly.swarm.swarmtool;
 
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
 import org.jboss.shrinkwrap.resolver.api.maven.ConfigurableMavenResolverSystem;
 import org.jboss.shrinkwrap.resolver.api.maven.Maven;
 import org.jboss.shrinkwrap.resolver.api.maven.repository.MavenChecksumPolicy;
@@ -24,6 +26,7 @@ import org.jboss.shrinkwrap.resolver.api.maven.repository.MavenRemoteRepository;
 import org.jboss.shrinkwrap.resolver.api.maven.repository.MavenUpdatePolicy;
 import org.wildfly.swarm.arquillian.adapter.ShrinkwrapArtifactResolvingHelper;
 import org.wildfly.swarm.tools.BuildTool;
+import org.wildfly.swarm.tools.CachingArtifactResolvingHelper;
 import org.wildfly.swarm.tools.PackageDetector;
 
 import java.io.File;
@@ -77,6 +80,24 @@ public class Build {
         return this;
     }
 
+    /**
+     * Resolve without any network access, from the local repository and the {@link #mirror(File)}, if any.
+     */
+    public Build offline(boolean offline) {
+        this.offline = offline;
+
+        return this;
+    }
+
+    /**
+     * Resolve from a directory in the Maven repository layout instead of the remote repositories.
+     */
+    public Build mirror(File mirror) {
+        this.mirror = mirror;
+
+        return this;
+    }
+
     private Map<String, Set<String>> loadProperties(final String name) throws IOException {
         final Properties properties = new Properties();
         try (InputStream in =
@@ -131,19 +152,48 @@ public class Build {
         final String[] parts = this.source.getName().split("\\.(?=[^\\.]+$)");
         final String baseName = parts[0];
         final String type = parts[1] == null ? "jar" : parts[1];
-        final MavenRemoteRepository jbossPublic =
-                MavenRemoteRepositories.createRemoteRepository("jboss-public-repository-group",
-                                                               "http://repository.jboss.org/nexus/content/groups/public/",
-                                                               "default");
-        jbossPublic.setChecksumPolicy(MavenChecksumPolicy.CHECKSUM_POLICY_IGNORE);
-        jbossPublic.setUpdatePolicy(MavenUpdatePolicy.UPDATE_POLICY_NEVER);
+        final ConfigurableMavenResolverSystem resolver = Maven.configureResolver();
+        final String repositories;
+        if (this.mirror != null) {
+            resolver.withMavenCentralRepo(false)
+                    .withRemoteRepo("mirror", this.mirror.toURI().toURL(), "default");
+            repositories = "mirror=" + this.mirror.toURI();
+        } else if (!this.offline) {
+            final MavenRemoteRepository jbossPublic =
+                    MavenRemoteRepositories.createRemoteRepository("jboss-public-repository-group",
+                                                                   "http://repository.jboss.org/nexus/content/groups/public/",
+                                                                   "default");
+            jbossPublic.setChecksumPolicy(MavenChecksumPolicy.CHECKSUM_POLICY_IGNORE);
+            jbossPublic.setUpdatePolicy(MavenUpdatePolicy.UPDATE_POLICY_NEVER);
+
+            resolver.withMavenCentralRepo(true)
+                    .withRemoteRepo(jbossPublic);
+            repositories = "central," + jbossPublic.getId() + "=" + jbossPublic.getUrl();
+        } else {
+            resolver.withMavenCentralRepo(false);
+            repositories = "";
+        }
 
-        final ConfigurableMavenResolverSystem resolver = Maven.configureResolver()
-                .withMavenCentralRepo(true)
-                .withRemoteRepo(jbossPublic);
+        final ShrinkwrapArtifactResolvingHelper helper = new ShrinkwrapArtifactResolvingHelper(resolver)
+                .downloadThreads(Math.max(5, Runtime.getRuntime().availableProcessors() * 2));
+        if (this.offline) {
+            resolver.workOffline();
+            // the mirror is a file: repository, which remains reachable offline
+            helper.configProperty("aether.offline.protocols", "file");
+        }
+
+        final CachingArtifactResolvingHelper cachingHelper =
+                new CachingArtifactResolvingHelper(helper, repositories + (this.offline ? ";offline" : ""));
+        // metadata is only resolved for snapshots and version ranges, transitive ones included
+        helper.repositoryListener(new AbstractRepositoryListener() {
+            @Override
+            public void metadataResolved(RepositoryEvent event) {
+                cachingHelper.uncacheable();
+            }
+        });
 
         final BuildTool tool = new BuildTool()
-                .artifactResolvingHelper(new ShrinkwrapArtifactResolvingHelper(resolver))
+                .artifactResolvingHelper(cachingHelper)
                 .projectArtifact("", baseName, "", type, this.source)
                 .resolveTransitiveDependencies(true);
 
@@ -168,5 +218,7 @@ public class Build {
     private File outputDir;
     private String name;
     private String version;
+    private boolean offline;
+    private File mirror;
 
 }
@@ -71,6 +71,8 @@ public class Main {
                 .addSwarmDependencies(foundOptions.valuesOf(FRACTIONS_OPT))
                 .outputDir(new File(foundOptions.valueOf(OUTPUT_DIR_OPT)))
                 .name(foundOptions.valueOf(NAME_OPT))
+                .offline(foundOptions.has(OFFLINE_OPT))
+                .mirror(foundOptions.valueOf(MIRROR_OPT))
                 .run();
     }
 
@@ -114,6 +116,15 @@ public class Main {
                     .ofType(String.class)
                     .describedAs("jar-name");
 
+    private static final OptionSpec<Void> OFFLINE_OPT =
+            OPT_PARSER.accepts("offline", "resolve without network access, from the local repository and the mirror, if any");
+
+    private static final OptionSpec<File> MIRROR_OPT =
+            OPT_PARSER.acceptsAll(asList("m", "mirror"), "directory, in the maven repository layout, to resolve from instead of the remote repositories")
+                    .withRequiredArg()
+                    .ofType(File.class)
+                    .describedAs("path");
+
     private static final OptionSpec<File> SOURCE_OPT =
             OPT_PARSER.nonOptions("The source artifact")
                     .ofType(File.class);
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.wildfly.swarm.bootstrap.m2.ArtifactStore;
+
+/**
+ * Produces the base layer of a thin -swarm.jar: the artifacts it resolves from the
+ * shared artifact store at runtime, laid out as that store.
+ *
+ * <p>Extracting the layer into the store's directory adds its artifacts; as artifacts are
+ * named by their SHA-1, layers of any number of applications may be extracted into the same
+ * store, and an artifact they share is held once. The layer may also be installed into a
+ * store directly.</p>
+ *
+ * <p>The store's index of coordinates is shared, so the thin jar carries its own, written by
+ * {@link #writeIndex()}, to resolve its artifacts by digest regardless. Installing refuses to
+ * replace an index entry of another digest.</p>
+ *
+ * <p>Artifacts are laid out by the paths of {@link ArtifactStore}.</p>
+ */
+public class BaseLayerBuilder {
+
+    private final Map<String, ArtifactSpec> artifacts = new LinkedHashMap<>();
+
+    private final Map<String, String> digests = new LinkedHashMap<>();
+
+    public BaseLayerBuilder add(ArtifactSpec artifact) throws IOException {
+        String path = indexPath(artifact);
+        if (!this.artifacts.containsKey(path)) {
+            this.artifacts.put(path, artifact);
+            this.digests.put(path, sha1(artifact.file));
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return this.artifacts.isEmpty();
+    }
+
+    /**
+     * @return the index of the layer, to be packaged into the thin jar as {@link ArtifactStore#JAR_INDEX}.
+     */
+    public String writeIndex() {
+        StringBuilder index = new StringBuilder();
+        for (Map.Entry<String, String> each : new TreeMap<>(this.digests).entrySet()) {
+            index.append(each.getKey()).append('=').append(each.getValue()).append('\n');
+        }
+        return index.toString();
+    }
+
+    /**
+     * Write the layer as a zip, to be extracted into the store.
+     */
+    public File build(File layer) throws IOException {
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        for (Map.Entry<String, ArtifactSpec> each : this.artifacts.entrySet()) {
+            String sha1 = this.digests.get(each.getKey());
+            archive.add(new FileAsset(each.getValue().file), ArtifactStore.blobPath(sha1, each.getValue().packaging));
+            archive.add(new StringAsset(sha1 + "\n"), each.getKey());
+        }
+        if (JarWriter.canWrite(archive)) {
+            try {
+                new JarWriter(layer).write(archive);
+                return layer;
+            } catch (JarWriter.TooLargeException e) {
+                // requires ZIP64, which the exporter writes
+            }
+        }
+        archive.as(ZipExporter.class).exportTo(layer, true);
+        return layer;
+    }
+
+    /**
+     * Add the artifacts of the layer to a store directory, skipping those already present.
+     *
+     * @throws IOException if the store already indexes an artifact of the layer with another digest.
+     */
+    public void install(Path store) throws IOException {
+        for (Map.Entry<String, ArtifactSpec> each : this.artifacts.entrySet()) {
+            String sha1 = this.digests.get(each.getKey());
+
+            Path index = store.resolve(each.getKey());
+            if (Files.exists(index)) {
+                String existing = new String(Files.readAllBytes(index), StandardCharsets.US_ASCII).trim();
+                if (!existing.equals(sha1)) {
+                    throw new IOException("Store " + store + " already indexes " + each.getValue()
+                            + " with digest " + existing + ", not " + sha1);
+                }
+            }
+
+            Path blob = store.resolve(ArtifactStore.blobPath(sha1, each.getValue().packaging));
+            if (Files.notExists(blob)) {
+                write(blob, (tmp) -> Files.copy(each.getValue().file.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING));
+            }
+            // the index last, so that an artifact is never indexed before it is stored
+            write(index, (tmp) -> Files.write(tmp, (sha1 + "\n").getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+
+    private static void write(Path target, Writer writer) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            writer.write(tmp);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private interface Writer {
+        void write(Path tmp) throws IOException;
+    }
+
+    static String indexPath(ArtifactSpec artifact) {
+        return ArtifactStore.indexPath(artifact.groupId, artifact.artifactId, artifact.version, artifact.classifier, artifact.packaging);
+    }
+
+    private static String sha1(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] buf = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                digest.update(buf, 0, len);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+}
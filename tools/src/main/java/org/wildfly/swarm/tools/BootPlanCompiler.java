@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.wildfly.swarm.bootstrap.util.PackagingProperties;
+
+/**
+ * Compiles the boot operations of a built -swarm.jar.
+ *
+ * <p>The jar is run once, applying the fraction defaults and the application's
+ * {@code main()}, but writing the resulting boot operations in DMR binary form
+ * instead of starting the container. Packaged into the jar, those operations are
+ * replayed on start, if {@code swarm.boot.plan=true} is set, rather than being built
+ * again by each fraction.</p>
+ */
+public class BootPlanCompiler {
+
+    private final File jar;
+
+    private long timeout = 5;
+
+    public BootPlanCompiler(File jar) {
+        this.jar = jar;
+    }
+
+    public BootPlanCompiler timeout(long minutes) {
+        this.timeout = minutes;
+        return this;
+    }
+
+    /**
+     * @return the compiled operations, to be packaged as {@link PackagingProperties#BOOT_PLAN_PATH}.
+     */
+    public byte[] compile() throws IOException, InterruptedException, BuildException {
+        Path out = Files.createTempFile("wildfly-swarm-boot", ".dmr");
+        try {
+            JavaLauncher.run(this.jar.getAbsoluteFile().getParentFile(), this.timeout,
+                    JavaLauncher.findJava().toString(),
+                    "-D" + PackagingProperties.BOOT_PLAN_COMPILE + "=" + out.toAbsolutePath(),
+                    "-jar", this.jar.getAbsolutePath());
+
+            if (Files.size(out) == 0) {
+                throw new BuildException("Boot operations were not written by: " + this.jar);
+            }
+            return Files.readAllBytes(out);
+        } finally {
+            Files.deleteIfExists(out);
+        }
+    }
+}
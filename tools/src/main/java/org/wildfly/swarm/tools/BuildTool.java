@@ -17,6 +17,7 @@ package org.wildfly.swarm.tools;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -25,9 +26,12 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -37,16 +41,23 @@ import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
 import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
 import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
 import org.jboss.shrinkwrap.api.asset.FileAsset;
 import org.jboss.shrinkwrap.api.asset.StringAsset;
 import org.jboss.shrinkwrap.api.exporter.ZipExporter;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.shrinkwrap.impl.base.asset.ZipFileEntryAsset;
+import org.wildfly.swarm.bootstrap.m2.ArtifactStore;
+import org.wildfly.swarm.bootstrap.util.BootIndex;
+import org.wildfly.swarm.bootstrap.util.PackagingProperties;
 
 /**
  * @author Bob McWhirter
@@ -63,6 +74,20 @@ public class BuildTool {
 
     private boolean resolveTransitiveDependencies = false;
 
+    private boolean classDataSharing = false;
+
+    private boolean compileBootPlan = false;
+
+    private boolean incremental = false;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean thin = false;
+
+    private Path artifactStore;
+
+    private final BaseLayerBuilder baseLayer = new BaseLayerBuilder();
+
     private final Set<ArtifactSpec> dependencies = new HashSet<>();
 
     private final Set<ArtifactSpec> moduleDependencies = new HashSet<>();
@@ -86,6 +111,10 @@ public class BuildTool {
 
     private Set<String> additionnalModules = new HashSet<>();
 
+    private final List<ArtifactSpec> bootstrapConf = new ArrayList<>();
+
+    private final List<String> applicationConf = new ArrayList<>();
+
     public BuildTool() {
         this.archive = ShrinkWrap.create(JavaArchive.class);
     }
@@ -115,6 +144,49 @@ public class BuildTool {
         return this;
     }
 
+    public BuildTool classDataSharing(boolean classDataSharing) {
+        this.classDataSharing = classDataSharing;
+        return this;
+    }
+
+    public BuildTool compileBootPlan(boolean compileBootPlan) {
+        this.compileBootPlan = compileBootPlan;
+        return this;
+    }
+
+    /**
+     * Re-use the compressed entries of the jar from the previous build, only compressing those which changed.
+     */
+    public BuildTool incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * @param compressionLevel from 0, storing every entry, to 9, or -1 for the default.
+     */
+    public BuildTool compressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Leave the artifacts out of the jar, for them to be resolved from the shared artifact store,
+     * and write them as a {@code -swarm-base.zip} layer to be extracted into the store instead.
+     */
+    public BuildTool thin(boolean thin) {
+        this.thin = thin;
+        return this;
+    }
+
+    /**
+     * Also install the artifacts of a thin jar into the store at the given directory.
+     */
+    public BuildTool artifactStore(Path artifactStore) {
+        this.artifactStore = artifactStore;
+        return this;
+    }
+
     public BuildTool projectArtifact(String groupId, String artifactId, String version, String packaging, File file) {
         this.projectAsset = new ArtifactAsset(new ArtifactSpec(null, groupId, artifactId, version, packaging, null, file));
         return this;
@@ -154,7 +226,26 @@ public class BuildTool {
 
     public File build(String baseName, Path dir) throws Exception {
         build();
-        return createJar(baseName, dir);
+        File jar = createJar(baseName, dir);
+        if (this.compileBootPlan) {
+            byte[] plan = new BootPlanCompiler(jar).compile();
+            this.archive.add(new ByteArrayAsset(plan), PackagingProperties.BOOT_PLAN_PATH);
+            jar = createJar(baseName, dir);
+        }
+        if (this.thin) {
+            this.baseLayer.build(new File(dir.toFile(), baseName + "-swarm-base.zip"));
+            if (this.artifactStore != null) {
+                this.baseLayer.install(this.artifactStore);
+            }
+        }
+        if (this.classDataSharing) {
+            if (SharedArchiveBuilder.isSupported()) {
+                new SharedArchiveBuilder(jar).build();
+            } else {
+                System.err.println("[WARN] class-data sharing requires JDK 10 or later, skipping the shared archive");
+            }
+        }
+        return jar;
     }
 
     public Archive build() throws Exception {
@@ -167,6 +258,10 @@ public class BuildTool {
         setupApplication();
         createDependenciesTxt();
         addAdditionnalModule();
+        createBootIndex();
+        if (this.thin && !this.baseLayer.isEmpty()) {
+            this.archive.add(new StringAsset(this.baseLayer.writeIndex()), ArtifactStore.JAR_INDEX);
+        }
         return this.archive;
     }
 
@@ -209,6 +304,7 @@ public class BuildTool {
 
         for (ArtifactSpec each : this.bootstrappedArtifacts) {
             bootstrapTxt.append(each.mscCoordinates()).append("\n");
+            this.bootstrapConf.add(each);
             gatherDependency(each);
         }
 
@@ -229,29 +325,32 @@ public class BuildTool {
 
         this.archive.add(this.projectAsset);
 
-        StringBuilder bootstrapTxt = new StringBuilder();
-
         for (String each : this.bootstrappedModules) {
-            bootstrapTxt.append("module:").append(each).append("\n");
+            this.applicationConf.add("module:" + each);
         }
 
         for (ArtifactSpec each : applicationArtifacts) {
             String mapped = this.providedMappings.get(each.groupId + ":" + each.artifactId);
             if (mapped != null) {
-                bootstrapTxt.append("module:").append(mapped).append("\n");
+                this.applicationConf.add("module:" + mapped);
             } else {
                 if (includeAsBootstrapJar(each)) {
                     gatherDependency(each);
                     if (each.classifier == null || each.classifier.equals("")) {
-                        bootstrapTxt.append("gav:").append(each.groupId + ":" + each.artifactId + ":" + each.version).append("\n");
+                        this.applicationConf.add("gav:" + each.groupId + ":" + each.artifactId + ":" + each.version);
                     } else {
-                        bootstrapTxt.append("gav:").append(each.groupId + ":" + each.artifactId + ":" + each.version + ":" + each.classifier).append("\n");
+                        this.applicationConf.add("gav:" + each.groupId + ":" + each.artifactId + ":" + each.version + ":" + each.classifier);
                     }
                 }
             }
         }
 
-        bootstrapTxt.append("path:").append(this.projectAsset.getName()).append("\n");
+        this.applicationConf.add("path:" + this.projectAsset.getName());
+
+        StringBuilder bootstrapTxt = new StringBuilder();
+        for (String each : this.applicationConf) {
+            bootstrapTxt.append(each).append("\n");
+        }
         this.archive.add(new StringAsset(bootstrapTxt.toString()), "META-INF/wildfly-swarm-application.conf");
 
     }
@@ -330,11 +429,97 @@ public class BuildTool {
         artifactPath.append('/').append(artifact.version);
         artifactPath.append('/').append(artifact.getFileName());
 
-        this.archive.add(new FileAsset(artifact.file), artifactPath.toString());
+        if (this.thin) {
+            this.baseLayer.add(artifact);
+        } else {
+            this.archive.add(new FileAsset(artifact.file), artifactPath.toString());
+        }
 
         artifact.gathered = true;
     }
 
+    /**
+     * Writes {@code META-INF/wildfly-swarm-boot.index}, read at boot by
+     * {@code org.wildfly.swarm.bootstrap.util.BootIndex}.
+     */
+    private void createBootIndex() throws IOException {
+        Map<String, byte[]> descriptors = new LinkedHashMap<>();
+
+        for (ArtifactSpec each : this.bootstrapConf) {
+            try (JarFile jar = new JarFile(each.file)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (isModuleDescriptor(entry.getName()) && !descriptors.containsKey(entry.getName())) {
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            descriptors.put(entry.getName(), readFully(in));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<ArchivePath, Node> each : this.archive.getContent().entrySet()) {
+            String name = each.getKey().get().substring(1);
+            Asset asset = each.getValue().getAsset();
+            if (asset != null && isModuleDescriptor(name) && !descriptors.containsKey(name)) {
+                try (InputStream in = asset.openStream()) {
+                    descriptors.put(name, readFully(in));
+                }
+            }
+        }
+
+        List<String> bootstrapArtifacts = new ArrayList<>();
+        for (ArtifactSpec each : this.bootstrapConf) {
+            bootstrapArtifacts.add(each.mscCoordinates());
+        }
+
+        this.archive.add(new ByteArrayAsset(writeBootIndex(bootstrapArtifacts, this.applicationConf, descriptors)), BootIndex.PATH);
+    }
+
+    /**
+     * @return the boot index, in the layout documented by {@link BootIndex}.
+     */
+    static byte[] writeBootIndex(List<String> bootstrapArtifacts, List<String> applicationEntries, Map<String, byte[]> descriptors) throws IOException {
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(indexBytes)) {
+            out.writeInt(BootIndex.MAGIC);
+            out.writeInt(BootIndex.VERSION);
+
+            out.writeInt(bootstrapArtifacts.size());
+            for (String each : bootstrapArtifacts) {
+                out.writeUTF(each);
+            }
+
+            out.writeInt(applicationEntries.size());
+            for (String each : applicationEntries) {
+                out.writeUTF(each);
+            }
+
+            out.writeInt(descriptors.size());
+            for (Map.Entry<String, byte[]> each : descriptors.entrySet()) {
+                out.writeUTF(each.getKey());
+                out.writeInt(each.getValue().length);
+                out.write(each.getValue());
+            }
+        }
+        return indexBytes.toByteArray();
+    }
+
+    private static boolean isModuleDescriptor(String name) {
+        return name.startsWith("modules/") && name.endsWith("/module.xml");
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
     private void createManifest() throws IOException {
         Manifest manifest = new Manifest();
 
@@ -453,7 +638,8 @@ public class BuildTool {
     }
 
     protected void collectDependencies() throws Exception {
-        if (!this.bundleDependencies) {
+        // a thin jar collects them into its base layer
+        if (!this.bundleDependencies && !this.thin) {
             return;
         }
         analyzeModuleDependencies();
@@ -544,6 +730,17 @@ public class BuildTool {
 
     private File createJar(String baseName, Path dir) throws IOException {
         File out = new File(dir.toFile(), baseName + "-swarm.jar");
+        if (JarWriter.canWrite(this.archive)) {
+            try {
+                new JarWriter(out)
+                        .incremental(this.incremental)
+                        .level(this.compressionLevel)
+                        .write(this.archive);
+                return out;
+            } catch (JarWriter.TooLargeException e) {
+                // requires ZIP64, which the exporter writes
+            }
+        }
         ZipExporter exporter = this.archive.as(ZipExporter.class);
         exporter.exportTo(out, true);
         return out;
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the result of resolving a set of artifacts transitively.
+ *
+ * <p>Results are keyed by the SHA-1 of the repository configuration and of the sorted coordinates
+ * requested, and stored under the directory named by {@code swarm.resolution.cache}, by default
+ * {@code ~/.wildfly-swarm/resolution-cache}. Set it to {@code none} to disable the cache. A cached
+ * result is only used if every file it lists still exists; otherwise the delegate resolves the
+ * artifacts again.</p>
+ *
+ * <p>Results which may change are never cached: those of requests without a version, or for a
+ * {@code SNAPSHOT} or a version range, those including a {@code SNAPSHOT}, and those for which
+ * the delegate reported, through {@link #uncacheable()}, that it consulted repository metadata,
+ * as it does to resolve any transitive {@code SNAPSHOT} or version range.</p>
+ */
+public class CachingArtifactResolvingHelper implements ArtifactResolvingHelper {
+
+    public static final String CACHE_PROPERTY = "swarm.resolution.cache";
+
+    private static final int CACHE_MAGIC = 0x53575243;
+
+    private static final int CACHE_VERSION = 1;
+
+    private static final Pattern TIMESTAMPED_SNAPSHOT = Pattern.compile(".*-\\d{8}\\.\\d{6}-\\d+");
+
+    private final ArtifactResolvingHelper delegate;
+
+    private final String repositories;
+
+    private final Path cache;
+
+    private volatile boolean uncacheable;
+
+    /**
+     * @param delegate     the helper resolving artifacts which are not cached
+     * @param repositories the repositories the delegate resolves from, and whether it works offline,
+     *                     as a string which changes whenever they do
+     */
+    public CachingArtifactResolvingHelper(ArtifactResolvingHelper delegate, String repositories) {
+        this(delegate, repositories, cacheDirectory());
+    }
+
+    public CachingArtifactResolvingHelper(ArtifactResolvingHelper delegate, String repositories, Path cache) {
+        this.delegate = delegate;
+        this.repositories = repositories;
+        this.cache = cache;
+    }
+
+    private static Path cacheDirectory() {
+        String dir = System.getProperty(CACHE_PROPERTY);
+        if ("none".equals(dir)) {
+            return null;
+        }
+        if (dir == null || dir.isEmpty()) {
+            return Paths.get(System.getProperty("user.home"), ".wildfly-swarm", "resolution-cache");
+        }
+        return Paths.get(dir);
+    }
+
+    @Override
+    public ArtifactSpec resolve(ArtifactSpec spec) throws Exception {
+        return this.delegate.resolve(spec);
+    }
+
+    @Override
+    public Set<ArtifactSpec> resolveAll(Set<ArtifactSpec> specs) throws Exception {
+        if (this.cache == null || !specs.stream().allMatch((e) -> isFixed(e.version))) {
+            return this.delegate.resolveAll(specs);
+        }
+
+        String key = key(specs);
+        Set<ArtifactSpec> resolved = readCache(key);
+        if (resolved == null) {
+            this.uncacheable = false;
+            resolved = this.delegate.resolveAll(specs);
+            if (!this.uncacheable && resolved.stream().allMatch((e) -> isFixed(e.version))) {
+                writeCache(key, resolved);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Prevent the result of the resolution in progress from being cached, because it depends upon
+     * repository metadata, such as the versions available for a range, which may change.
+     */
+    public void uncacheable() {
+        this.uncacheable = true;
+    }
+
+    static boolean isFixed(String version) {
+        if (version == null || version.isEmpty()) {
+            return false;
+        }
+        if (version.endsWith("-SNAPSHOT") || TIMESTAMPED_SNAPSHOT.matcher(version).matches()) {
+            return false;
+        }
+        if (version.equals("LATEST") || version.equals("RELEASE")) {
+            return false;
+        }
+        char first = version.charAt(0);
+        return first != '[' && first != '(';
+    }
+
+    private String key(Set<ArtifactSpec> specs) {
+        Set<String> coordinates = new TreeSet<>();
+        for (ArtifactSpec each : specs) {
+            coordinates.add(each.coordinates());
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(String.valueOf(this.repositories).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        for (String each : coordinates) {
+            digest.update(each.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    private Set<ArtifactSpec> readCache(String key) {
+        Path file = this.cache.resolve(key);
+        if (Files.notExists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+                return null;
+            }
+            Set<ArtifactSpec> specs = new HashSet<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                String scope = in.readUTF();
+                String groupId = in.readUTF();
+                String artifactId = in.readUTF();
+                String version = in.readUTF();
+                String packaging = in.readUTF();
+                String classifier = in.readBoolean() ? in.readUTF() : null;
+                File artifact = new File(in.readUTF());
+                if (!artifact.isFile()) {
+                    return null;
+                }
+                specs.add(new ArtifactSpec(scope, groupId, artifactId, version, packaging, classifier, artifact));
+            }
+            return specs;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(String key, Set<ArtifactSpec> specs) {
+        for (ArtifactSpec each : specs) {
+            if (each.file == null || each.scope == null || each.packaging == null) {
+                return;
+            }
+        }
+        try {
+            Files.createDirectories(this.cache);
+            Path tmp = Files.createTempFile(this.cache, key, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(CACHE_MAGIC);
+                    out.writeInt(CACHE_VERSION);
+                    out.writeInt(specs.size());
+                    for (ArtifactSpec each : specs) {
+                        out.writeUTF(each.scope);
+                        out.writeUTF(each.groupId);
+                        out.writeUTF(each.artifactId);
+                        out.writeUTF(each.version);
+                        out.writeUTF(each.packaging);
+                        out.writeBoolean(each.classifier != null);
+                        if (each.classifier != null) {
+                            out.writeUTF(each.classifier);
+                        }
+                        out.writeUTF(each.file.getAbsolutePath());
+                    }
+                }
+                Files.move(tmp, this.cache.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // the cache is only an optimization
+        }
+    }
+}
@@ -0,0 +1,805 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+
+/**
+ * Writes an archive as a jar, re-using the compressed entries of the previous build.
+ *
+ * <p>Alongside the jar, an index records the compression settings, and for each entry the file
+ * it was read from, if any, with that file's size and modification time, and the entry's CRC
+ * and size. The index is ignored if the settings have changed since. Otherwise an entry
+ * read from a file unchanged since is copied from the previous jar as it stands, without
+ * reading the file; any other entry is read, and copied still compressed if its CRC and size
+ * match those of the previous build. Only the entries which did change are deflated.</p>
+ *
+ * <p>Entries are read and deflated in parallel on a fork-join pool, a few ahead of the one
+ * being written, and written in order. Nested archives, such as the jars under {@code m2repo/},
+ * are already compressed, so they are stored rather than deflated again, which also leaves
+ * their bytes as they are within the jar, to be read or mapped in place.</p>
+ *
+ * <p>The previous jar is only trusted if it is the one the index was written for. The jar is
+ * written to a temporary file, and moved in place once complete.</p>
+ *
+ * <p>Every entry is given the same fixed time, so that builds are reproducible.</p>
+ *
+ * <p>ZIP64 is not written; a {@link TooLargeException} is thrown, before the jar is replaced,
+ * for an archive which would require it.</p>
+ */
+class JarWriter {
+
+    private static final int INDEX_MAGIC = 0x5357494A;
+
+    private static final int INDEX_VERSION = 2;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    private static final int CENTRAL_HEADER = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    /**
+     * 1980-01-01 00:00:00, the earliest time a zip entry holds.
+     */
+    static final long FIXED_DOS_TIME = (1 << 21) | (1 << 16);
+
+    private final File jar;
+
+    private final File index;
+
+    private boolean incremental = true;
+
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean storeNestedArchives = true;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private int copied;
+
+    private int compressed;
+
+    JarWriter(File jar) {
+        this.jar = jar;
+        this.index = new File(jar.getParentFile(), jar.getName() + ".index");
+    }
+
+    /**
+     * Whether to re-use the entries of the previous jar; the index is written either way.
+     */
+    JarWriter incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * @param level from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION},
+     *              or {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    JarWriter level(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Whether to store nested archives, such as the jars under {@code m2repo/}, rather than deflate them again.
+     */
+    JarWriter storeNestedArchives(boolean storeNestedArchives) {
+        this.storeNestedArchives = storeNestedArchives;
+        return this;
+    }
+
+    /**
+     * @param parallelism the number of entries compressed at once; 1 to compress on the calling thread.
+     */
+    JarWriter parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @return the number of entries copied from the previous jar by the last {@link #write(Archive)}.
+     */
+    int getCopiedCount() {
+        return this.copied;
+    }
+
+    /**
+     * @return the number of entries compressed by the last {@link #write(Archive)}.
+     */
+    int getCompressedCount() {
+        return this.compressed;
+    }
+
+    /**
+     * Whether the archive fits a jar without ZIP64, as far as can be told without reading its assets.
+     *
+     * @return {@code false} if the archive has more entries, or files larger in total, than a jar holds without ZIP64.
+     */
+    static boolean canWrite(Archive<?> archive) {
+        Map<ArchivePath, Node> content = archive.getContent();
+        if (content.size() > MAX_ENTRIES) {
+            return false;
+        }
+        long total = 0;
+        for (Node each : content.values()) {
+            if (each.getAsset() instanceof FileAsset) {
+                total += ((FileAsset) each.getAsset()).getSource().length();
+                if (total > MAX_32) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Thrown when an archive would require ZIP64.
+     */
+    static class TooLargeException extends IOException {
+        TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    void write(Archive<?> archive) throws IOException {
+        this.copied = 0;
+        this.compressed = 0;
+
+        Map<String, Recorded> recorded = this.incremental ? readIndex() : new HashMap<>();
+        Map<String, Located> located = recorded.isEmpty() ? new HashMap<>() : readCentralDirectory(this.jar);
+
+        File tmp = new File(this.jar.getParentFile(), this.jar.getName() + ".tmp");
+        List<Written> written = new ArrayList<>();
+        ForkJoinPool pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        // entries are prepared ahead of being written, in order, bounding how many are held at once
+        int window = Math.max(1, this.parallelism) * 4;
+
+        try (RandomAccessFile previous = located.isEmpty() ? null : new RandomAccessFile(this.jar, "r");
+             CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+
+            Deque<Pending> pending = new ArrayDeque<>();
+            for (Map.Entry<String, Node> each : entries(archive).entrySet()) {
+                String name = each.getKey();
+                Asset asset = each.getValue().getAsset();
+                Recorded previousEntry = recorded.get(name);
+                Located previousData = located.get(name);
+                Source source = asset == null ? null : Source.of(asset);
+
+                if (asset == null) {
+                    pending.add(new Pending(name, null, Prepared.DIRECTORY));
+                } else if (previousEntry != null && previousData != null && source != null && source.equals(previousEntry.source)) {
+                    pending.add(new Pending(name, source, new Prepared(previousData)));
+                } else {
+                    Callable<Prepared> task = () -> prepare(name, asset, previousEntry, previousData);
+                    if (pool == null) {
+                        pending.add(new Pending(name, source, task));
+                    } else {
+                        pending.add(new Pending(name, source, pool.submit(task)));
+                    }
+                }
+
+                while (pending.size() > window) {
+                    written.add(writeEntry(pending.removeFirst(), previous, out));
+                }
+            }
+            while (!pending.isEmpty()) {
+                written.add(writeEntry(pending.removeFirst(), previous, out));
+            }
+
+            long centralDirectory = out.count;
+            for (Written each : written) {
+                writeCentralHeader(out, each);
+            }
+            writeEndOfCentralDirectory(out, written.size(), centralDirectory, out.count - centralDirectory);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+
+        Files.move(tmp.toPath(), this.jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        writeIndex(written);
+    }
+
+    /**
+     * Read and compress an entry, unless it matches that of the previous jar. Runs on the pool.
+     */
+    private Prepared prepare(String name, Asset asset, Recorded previousEntry, Located previousData) throws IOException {
+        byte[] content = readFully(asset);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        if (previousEntry != null && previousData != null
+                && previousEntry.crc == crc.getValue() && previousEntry.size == content.length) {
+            return new Prepared(previousData);
+        }
+
+        if (!isStored(name)) {
+            byte[] deflated = deflate(content, this.level);
+            if (deflated.length < content.length) {
+                return new Prepared(ZipEntry.DEFLATED, crc.getValue(), content.length, deflated);
+            }
+        }
+        return new Prepared(ZipEntry.STORED, crc.getValue(), content.length, content);
+    }
+
+    private boolean isStored(String name) {
+        return this.level == Deflater.NO_COMPRESSION
+                || (this.storeNestedArchives && (name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".zip")));
+    }
+
+    private Written writeEntry(Pending pending, RandomAccessFile previous, CountingOutputStream out) throws IOException {
+        Prepared prepared = pending.get();
+        if (prepared.copyFrom != null) {
+            return copy(previous, prepared.copyFrom, pending.name, pending.source, out);
+        }
+
+        Written entry = new Written(pending.name, prepared.method, prepared.crc, prepared.data.length, prepared.size,
+                FIXED_DOS_TIME, out.count);
+        entry.source = pending.source;
+        writeLocalHeader(out, entry);
+        out.write(prepared.data);
+        if (prepared != Prepared.DIRECTORY) {
+            ++this.compressed;
+        }
+        return entry;
+    }
+
+    /**
+     * Entries sorted by name, so that builds are reproducible, except for the manifest, which is first.
+     */
+    private static Map<String, Node> entries(Archive<?> archive) {
+        Map<String, Node> sorted = new TreeMap<>((l, r) -> {
+            if (l.equals(r)) {
+                return 0;
+            }
+            if (l.equals("META-INF/") || (l.equals(MANIFEST) && !r.equals("META-INF/"))) {
+                return -1;
+            }
+            if (r.equals("META-INF/") || r.equals(MANIFEST)) {
+                return 1;
+            }
+            return l.compareTo(r);
+        });
+        for (Map.Entry<ArchivePath, Node> each : archive.getContent().entrySet()) {
+            String name = each.getKey().get().substring(1);
+            if (name.isEmpty()) {
+                continue;
+            }
+            sorted.put(each.getValue().getAsset() == null ? name + "/" : name, each.getValue());
+        }
+        return sorted;
+    }
+
+    private Written copy(RandomAccessFile previous, Located data, String name, Source source, CountingOutputStream out) throws IOException {
+        Written entry = new Written(name, data.method, data.crc, data.compressedSize, data.size, FIXED_DOS_TIME, out.count);
+        entry.source = source;
+        writeLocalHeader(out, entry);
+
+        byte[] header = new byte[30];
+        previous.seek(data.localHeaderOffset);
+        previous.readFully(header);
+        ByteBuffer buf = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(0) != LOCAL_HEADER) {
+            throw new IOException("Invalid local header for " + name + " in " + this.jar);
+        }
+        previous.seek(data.localHeaderOffset + 30 + (buf.getShort(26) & 0xFFFF) + (buf.getShort(28) & 0xFFFF));
+
+        byte[] chunk = new byte[64 * 1024];
+        long remaining = data.compressedSize;
+        while (remaining > 0) {
+            int len = previous.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+            if (len < 0) {
+                throw new IOException("Truncated entry " + name + " in " + this.jar);
+            }
+            out.write(chunk, 0, len);
+            remaining -= len;
+        }
+        ++this.copied;
+        return entry;
+    }
+
+    static byte[] deflate(byte[] content, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+            byte[] buf = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] readFully(Asset asset) throws IOException {
+        try (InputStream in = asset.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // zip structures
+    // ----------------------------------------------------------------------
+
+    private static void writeLocalHeader(OutputStream out, Written entry) throws IOException {
+        checkSize(entry);
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(LOCAL_HEADER);
+        buf.putShort((short) (entry.method == ZipEntry.STORED ? 10 : 20));
+        buf.putShort((short) UTF8_FLAG);
+        buf.putShort((short) entry.method);
+        buf.putInt((int) entry.dosTime);
+        buf.putInt((int) entry.crc);
+        buf.putInt((int) entry.compressedSize);
+        buf.putInt((int) entry.size);
+        buf.putShort((short) name.length);
+        buf.putShort((short) 0);
+        buf.put(name);
+        out.write(buf.array());
+    }
+
+    private static void writeCentralHeader(OutputStream out, Written entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(CENTRAL_HEADER);
+        buf.putShort((short) 20);
+        buf.putShort((short) (entry.method == ZipEntry.STORED ? 10 : 20));
+        buf.putShort((short) UTF8_FLAG);
+        buf.putShort((short) entry.method);
+        buf.putInt((int) entry.dosTime);
+        buf.putInt((int) entry.crc);
+        buf.putInt((int) entry.compressedSize);
+        buf.putInt((int) entry.size);
+        buf.putShort((short) name.length);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putInt(entry.name.endsWith("/") ? 0x10 : 0);
+        buf.putInt((int) entry.offset);
+        buf.put(name);
+        out.write(buf.array());
+    }
+
+    private static void writeEndOfCentralDirectory(OutputStream out, int count, long offset, long size) throws IOException {
+        if (count > MAX_ENTRIES || offset > MAX_32 || size > MAX_32) {
+            throw new TooLargeException("Jar too large to be written without ZIP64");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(END_OF_CENTRAL_DIRECTORY);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putShort((short) count);
+        buf.putShort((short) count);
+        buf.putInt((int) size);
+        buf.putInt((int) offset);
+        buf.putShort((short) 0);
+        out.write(buf.array());
+    }
+
+    private static void checkSize(Written entry) throws IOException {
+        if (entry.offset > MAX_32 || entry.size > MAX_32 || entry.compressedSize > MAX_32) {
+            throw new TooLargeException("Jar too large to be written without ZIP64: " + entry.name);
+        }
+    }
+
+    /**
+     * Locate the data of each entry of a jar, from its central directory.
+     */
+    static Map<String, Located> readCentralDirectory(File jar) throws IOException {
+        Map<String, Located> entries = new HashMap<>();
+        if (!jar.isFile()) {
+            return entries;
+        }
+
+        try (FileChannel channel = FileChannel.open(jar.toPath())) {
+            long length = channel.size();
+            int tail = (int) Math.min(length, 22 + 0xFFFF);
+            ByteBuffer end = ByteBuffer.allocate(tail).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(end, length - tail);
+
+            int eocd = -1;
+            for (int i = tail - 22; i >= 0; --i) {
+                if (end.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                return entries;
+            }
+
+            int count = end.getShort(eocd + 10) & 0xFFFF;
+            long size = end.getInt(eocd + 12) & MAX_32;
+            long offset = end.getInt(eocd + 16) & MAX_32;
+
+            ByteBuffer cd = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(cd, offset);
+            cd.flip();
+
+            for (int i = 0; i < count; ++i) {
+                if (cd.getInt() != CENTRAL_HEADER) {
+                    return new HashMap<>();
+                }
+                cd.position(cd.position() + 6);
+                int method = cd.getShort() & 0xFFFF;
+                long dosTime = cd.getInt() & MAX_32;
+                long crc = cd.getInt() & MAX_32;
+                long compressedSize = cd.getInt() & MAX_32;
+                long uncompressedSize = cd.getInt() & MAX_32;
+                int nameLength = cd.getShort() & 0xFFFF;
+                int extraLength = cd.getShort() & 0xFFFF;
+                int commentLength = cd.getShort() & 0xFFFF;
+                cd.position(cd.position() + 8);
+                long localHeaderOffset = cd.getInt() & MAX_32;
+                byte[] name = new byte[nameLength];
+                cd.get(name);
+                cd.position(cd.position() + extraLength + commentLength);
+
+                entries.put(new String(name, StandardCharsets.UTF_8),
+                        new Located(method, dosTime, crc, compressedSize, uncompressedSize, localHeaderOffset));
+            }
+        }
+        return entries;
+    }
+
+    // ----------------------------------------------------------------------
+    // index
+    // ----------------------------------------------------------------------
+
+    private Map<String, Recorded> readIndex() {
+        Map<String, Recorded> entries = new HashMap<>();
+        if (!this.index.isFile() || !this.jar.isFile()) {
+            return entries;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(this.index))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                return entries;
+            }
+            if (in.readInt() != this.level || in.readBoolean() != this.storeNestedArchives) {
+                // entries were compressed differently
+                return entries;
+            }
+            if (in.readLong() != this.jar.length() || in.readLong() != this.jar.lastModified()) {
+                // not the jar the index was written for
+                return entries;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                String name = in.readUTF();
+                Source source = null;
+                if (in.readBoolean()) {
+                    source = new Source(in.readUTF(), in.readLong(), in.readLong());
+                }
+                entries.put(name, new Recorded(source, in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            return new HashMap<>();
+        }
+        return entries;
+    }
+
+    private void writeIndex(List<Written> written) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.index)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(this.level);
+            out.writeBoolean(this.storeNestedArchives);
+            out.writeLong(this.jar.length());
+            out.writeLong(this.jar.lastModified());
+            out.writeInt(written.size());
+            for (Written each : written) {
+                out.writeUTF(each.name);
+                out.writeBoolean(each.source != null);
+                if (each.source != null) {
+                    out.writeUTF(each.source.path);
+                    out.writeLong(each.source.size);
+                    out.writeLong(each.source.lastModified);
+                }
+                out.writeLong(each.crc);
+                out.writeLong(each.size);
+            }
+        }
+    }
+
+    /**
+     * The file an entry was read from.
+     */
+    private static class Source {
+        private final String path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        Source(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static Source of(Asset asset) {
+            if (asset instanceof FileAsset) {
+                File file = ((FileAsset) asset).getSource();
+                return new Source(file.getAbsolutePath(), file.length(), file.lastModified());
+            }
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Source)) {
+                return false;
+            }
+            Source that = (Source) obj;
+            return this.path.equals(that.path) && this.size == that.size && this.lastModified == that.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.path.hashCode();
+        }
+    }
+
+    private static class Recorded {
+        private final Source source;
+
+        private final long crc;
+
+        private final long size;
+
+        Recorded(Source source, long crc, long size) {
+            this.source = source;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    static class Located {
+        final int method;
+
+        final long dosTime;
+
+        final long crc;
+
+        final long compressedSize;
+
+        final long size;
+
+        final long localHeaderOffset;
+
+        Located(int method, long dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    /**
+     * An entry ready to be written, or to be copied from the previous jar.
+     */
+    private static class Prepared {
+        private static final Prepared DIRECTORY = new Prepared(ZipEntry.STORED, 0, 0, new byte[0]);
+
+        private final Located copyFrom;
+
+        private final int method;
+
+        private final long crc;
+
+        private final long size;
+
+        private final byte[] data;
+
+        Prepared(int method, long crc, long size, byte[] data) {
+            this.copyFrom = null;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        Prepared(Located copyFrom) {
+            this.copyFrom = copyFrom;
+            this.method = copyFrom.method;
+            this.crc = copyFrom.crc;
+            this.size = copyFrom.size;
+            this.data = null;
+        }
+    }
+
+    private static class Pending {
+        private final String name;
+
+        private final Source source;
+
+        private final Prepared prepared;
+
+        private final Callable<Prepared> task;
+
+        private final Future<Prepared> future;
+
+        Pending(String name, Source source, Prepared prepared) {
+            this(name, source, prepared, null, null);
+        }
+
+        /**
+         * Prepared once due to be written, on the writing thread.
+         */
+        Pending(String name, Source source, Callable<Prepared> task) {
+            this(name, source, null, task, null);
+        }
+
+        Pending(String name, Source source, Future<Prepared> future) {
+            this(name, source, null, null, future);
+        }
+
+        private Pending(String name, Source source, Prepared prepared, Callable<Prepared> task, Future<Prepared> future) {
+            this.name = name;
+            this.source = source;
+            this.prepared = prepared;
+            this.task = task;
+            this.future = future;
+        }
+
+        Prepared get() throws IOException {
+            try {
+                if (this.future != null) {
+                    return this.future.get();
+                }
+                if (this.task != null) {
+                    return this.task.call();
+                }
+                return this.prepared;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Unable to write " + this.name, e.getCause());
+            } catch (IOException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted writing " + this.name, e);
+            } catch (Exception e) {
+                throw new IOException("Unable to write " + this.name, e);
+            }
+        }
+    }
+
+    private static class Written {
+        private final String name;
+
+        private final int method;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long dosTime;
+
+        private final long offset;
+
+        private Source source;
+
+        Written(String name, int method, long crc, long compressedSize, long size, long dosTime, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.dosTime = dosTime;
+            this.offset = offset;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+
+        private long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.delegate.write(b);
+            ++this.count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.delegate.write(b, off, len);
+            this.count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.delegate.close();
+        }
+    }
+}
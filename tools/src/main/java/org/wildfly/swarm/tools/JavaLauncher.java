@@ -0,0 +1,74 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the current JVM's {@code java} binary as part of a build.
+ */
+class JavaLauncher {
+
+    private JavaLauncher() {
+
+    }
+
+    static void run(File dir, long timeoutMinutes, String... command) throws IOException, InterruptedException, BuildException {
+        List<String> cli = new ArrayList<>(Arrays.asList(command));
+        Process process = new ProcessBuilder(cli)
+                .directory(dir)
+                .inheritIO()
+                .start();
+
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new BuildException("Timed out running: " + cli);
+        }
+
+        if (process.exitValue() != 0) {
+            throw new BuildException("Exit code " + process.exitValue() + " running: " + cli);
+        }
+    }
+
+    static Path findJava() throws BuildException {
+        String javaHome = System.getProperty("java.home");
+        if (javaHome == null) {
+            throw new BuildException("java.home not set, unable to locate java");
+        }
+
+        Path binDir = Paths.get(javaHome, "bin");
+
+        Path java = binDir.resolve("java.exe");
+        if (Files.exists(java)) {
+            return java;
+        }
+
+        java = binDir.resolve("java");
+        if (Files.exists(java)) {
+            return java;
+        }
+
+        throw new BuildException("Unable to determine java binary");
+    }
+}
@@ -15,7 +15,6 @@
  */
 package org.wildfly.swarm.tools;
 
-import org.apache.commons.io.IOUtils;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -29,10 +28,20 @@ import org.objectweb.asm.TypePath;
 import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -41,19 +50,64 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
+/**
+ * Detects the packages referenced by the classes of an archive, and of the jars nested within it.
+ *
+ * <p>Nested jars are streamed, rather than copied to temporary files. Classes are read in
+ * batches on a fork-join pool. Their code is visited, rather than only their constant pool
+ * being read: the pool also names the owners of constants which javac inlined, and lacks the
+ * generic signatures of local variables.</p>
+ *
+ * <p>The packages referenced by each nested jar are cached, by the SHA-1 of the jar, under
+ * the directory named by {@code swarm.package.cache}, by default {@code ~/.wildfly-swarm/package-cache},
+ * so that the dependencies of an application are only scanned once. Set it to {@code none}
+ * to disable the cache.</p>
+ */
 public class PackageDetector {
+
+    public static final String CACHE_PROPERTY = "swarm.package.cache";
+
+    private static final int CACHE_MAGIC = 0x53575043;
+
+    // bump whenever detection changes, to invalidate cached results
+    private static final int CACHE_VERSION = 2;
+
+    private static final int BATCH_SIZE = 256;
+
+    private final Path cache;
+
+    private final ForkJoinPool pool;
+
+    PackageDetector(Path cache, ForkJoinPool pool) {
+        this.cache = cache;
+        this.pool = pool;
+    }
+
     public static Map<String, Set<String>> detectPackages(final ZipFile file) throws IOException {
-        final PackageCollector visitor = new PackageCollector();
+        return new PackageDetector(cacheDirectory(), ForkJoinPool.commonPool()).detect(file);
+    }
 
-        return detectPackages(file, visitor);
+    private static Path cacheDirectory() {
+        String dir = System.getProperty(CACHE_PROPERTY);
+        if ("none".equals(dir)) {
+            return null;
+        }
+        if (dir == null || dir.isEmpty()) {
+            return Paths.get(System.getProperty("user.home"), ".wildfly-swarm", "package-cache");
+        }
+        return Paths.get(dir);
     }
 
-    protected static Map<String, Set<String>> detectPackages(final ZipFile file,
-                                                final PackageCollector visitor) throws IOException {
+    Map<String, Set<String>> detect(final ZipFile file) throws IOException {
+        List<CompletableFuture<Map<String, Set<String>>>> results = new ArrayList<>();
+        List<byte[]> batch = new ArrayList<>();
+
         final Enumeration<? extends ZipEntry> entries = file.entries();
         while (entries.hasMoreElements()) {
             ZipEntry entry = entries.nextElement();
@@ -61,23 +115,163 @@ public class PackageDetector {
 
             // TODO: accept wars, ears?
             if (name.endsWith(".jar")) {
-                final File jarFile = File.createTempFile("swarmPackageDetector", ".jar");
-                jarFile.deleteOnExit();
-
-                try (InputStream in = file.getInputStream(entry);
-                     FileOutputStream out = new FileOutputStream(jarFile)) {
-                    IOUtils.copy(in, out);
+                try (InputStream in = file.getInputStream(entry)) {
+                    results.add(detectNested(readFully(in)));
                 }
-
-                detectPackages(new ZipFile(jarFile), visitor);
             } else if (name.endsWith(".class")) {
                 try (InputStream in = file.getInputStream(entry)) {
-                    new ClassReader(in).accept(visitor, 0);
+                    batch.add(readFully(in));
+                }
+                if (batch.size() >= BATCH_SIZE) {
+                    results.add(scan(batch));
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            results.add(scan(batch));
+        }
+
+        return Collections.unmodifiableMap(merge(results));
+    }
+
+    private CompletableFuture<Map<String, Set<String>>> detectNested(byte[] jar) throws IOException {
+        String sha1 = sha1(jar);
+        Map<String, Set<String>> cached = readCache(sha1);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        List<CompletableFuture<Map<String, Set<String>>>> results = new ArrayList<>();
+        List<byte[]> batch = new ArrayList<>();
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(jar))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.endsWith(".jar")) {
+                    results.add(detectNested(readFully(in)));
+                } else if (name.endsWith(".class")) {
+                    batch.add(readFully(in));
+                    if (batch.size() >= BATCH_SIZE) {
+                        results.add(scan(batch));
+                        batch = new ArrayList<>();
+                    }
                 }
             }
         }
+        if (!batch.isEmpty()) {
+            results.add(scan(batch));
+        }
 
-        return visitor.packageSources();
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                .thenApply((ignored) -> {
+                    Map<String, Set<String>> packages = merge(results);
+                    writeCache(sha1, packages);
+                    return packages;
+                });
+    }
+
+    private CompletableFuture<Map<String, Set<String>>> scan(List<byte[]> classes) {
+        return CompletableFuture.supplyAsync(() -> {
+            PackageCollector collector = new PackageCollector();
+            for (byte[] each : classes) {
+                // frames only restate types already referenced
+                new ClassReader(each).accept(collector, ClassReader.SKIP_FRAMES);
+            }
+            return collector.packageSources();
+        }, this.pool);
+    }
+
+    private static Map<String, Set<String>> merge(List<CompletableFuture<Map<String, Set<String>>>> results) {
+        Map<String, Set<String>> merged = new HashMap<>();
+        for (CompletableFuture<Map<String, Set<String>>> each : results) {
+            for (Map.Entry<String, Set<String>> packages : each.join().entrySet()) {
+                merged.computeIfAbsent(packages.getKey(), (k) -> new HashSet<>()).addAll(packages.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private Map<String, Set<String>> readCache(String sha1) {
+        if (this.cache == null) {
+            return null;
+        }
+        Path file = this.cache.resolve(sha1);
+        if (Files.notExists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+                return null;
+            }
+            Map<String, Set<String>> packages = new HashMap<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                String name = in.readUTF();
+                int sourceCount = in.readInt();
+                Set<String> sources = new HashSet<>();
+                for (int j = 0; j < sourceCount; ++j) {
+                    sources.add(in.readUTF());
+                }
+                packages.put(name, sources);
+            }
+            return packages;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(String sha1, Map<String, Set<String>> packages) {
+        if (this.cache == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(this.cache);
+            Path tmp = Files.createTempFile(this.cache, sha1, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(CACHE_MAGIC);
+                    out.writeInt(CACHE_VERSION);
+                    out.writeInt(packages.size());
+                    for (Map.Entry<String, Set<String>> each : packages.entrySet()) {
+                        out.writeUTF(each.getKey());
+                        out.writeInt(each.getValue().size());
+                        for (String source : each.getValue()) {
+                            out.writeUTF(source);
+                        }
+                    }
+                }
+                Files.move(tmp, this.cache.resolve(sha1), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // the cache is only an optimization
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha1(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(content)) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     static class PackageCollector extends ClassVisitor {
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.wildfly.swarm.bootstrap.util.PackagingProperties;
+
+/**
+ * Produces a class-data-sharing archive for a built -swarm.jar.
+ *
+ * <p>The jar is started once in training mode, which exits as soon as the
+ * container has booted, while the JVM records the classes it loaded. That
+ * class-list is then dumped into a shared archive, and a launcher script
+ * passing the matching flags is written next to the jar.</p>
+ *
+ * <p>Sharing classes of the application class-path requires application class-data
+ * sharing, available from JDK 10 (see {@link #isSupported()}); earlier JDKs only
+ * share their own classes. It then covers the JDK and the classes at the root of
+ * the jar, being jboss-modules and the bootstrap. Classes defined by module
+ * class-loaders, from nested jars, are still loaded as usual.</p>
+ */
+public class SharedArchiveBuilder {
+
+    private static final int MINIMUM_VERSION = 10;
+
+    private final File jar;
+
+    private long trainingTimeout = 5;
+
+    public SharedArchiveBuilder(File jar) {
+        this.jar = jar;
+    }
+
+    public SharedArchiveBuilder trainingTimeout(long minutes) {
+        this.trainingTimeout = minutes;
+        return this;
+    }
+
+    /**
+     * @return whether the JDK running the build, and so the training run, supports application class-data sharing.
+     */
+    public static boolean isSupported() {
+        return javaVersion() >= MINIMUM_VERSION;
+    }
+
+    static int javaVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Options needed to use a shared archive of application classes; only JDK 10 needs it unlocked.
+     */
+    private static String appCdsOption() {
+        return javaVersion() == MINIMUM_VERSION ? "-XX:+UseAppCDS" : null;
+    }
+
+    public File build() throws IOException, InterruptedException, BuildException {
+        if (!isSupported()) {
+            throw new BuildException("Class-data sharing of application classes requires JDK " + MINIMUM_VERSION
+                    + " or later, not " + System.getProperty("java.specification.version"));
+        }
+
+        Path dir = this.jar.getAbsoluteFile().getParentFile().toPath();
+        String baseName = this.jar.getName();
+        if (baseName.endsWith(".jar")) {
+            baseName = baseName.substring(0, baseName.length() - 4);
+        }
+
+        Path classList = dir.resolve(baseName + ".classlist");
+        Path archive = dir.resolve(baseName + ".jsa");
+        Path java = JavaLauncher.findJava();
+
+        Files.deleteIfExists(classList);
+        run(java.toString(),
+                appCdsOption(),
+                "-Xshare:off",
+                "-XX:DumpLoadedClassList=" + classList,
+                "-D" + PackagingProperties.CDS_TRAINING + "=true",
+                "-jar", this.jar.getAbsolutePath());
+
+        if (!Files.exists(classList)) {
+            throw new BuildException("Training run did not produce a class-list: " + classList);
+        }
+
+        run(java.toString(),
+                appCdsOption(),
+                "-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList,
+                "-XX:SharedArchiveFile=" + archive,
+                "-cp", this.jar.getAbsolutePath());
+
+        return writeLauncher(dir, baseName, archive);
+    }
+
+    private File writeLauncher(Path dir, String baseName, Path archive) throws IOException {
+        StringBuilder script = new StringBuilder();
+        script.append("#!/bin/sh\n");
+        script.append("DIR=$(cd \"$(dirname \"$0\")\" && pwd)\n");
+        script.append("exec java ");
+        if (appCdsOption() != null) {
+            script.append(appCdsOption()).append(" ");
+        }
+        script.append("-Xshare:auto -XX:SharedArchiveFile=\"$DIR/").append(archive.getFileName()).append("\" ");
+        script.append("$JAVA_OPTS -jar \"$DIR/").append(this.jar.getName()).append("\" \"$@\"\n");
+
+        File launcher = dir.resolve(baseName + ".sh").toFile();
+        Files.write(launcher.toPath(), script.toString().getBytes());
+        launcher.setExecutable(true);
+        return launcher;
+    }
+
+    private void run(String... command) throws IOException, InterruptedException, BuildException {
+        String[] cli = Arrays.stream(command).filter(Objects::nonNull).toArray(String[]::new);
+        JavaLauncher.run(this.jar.getAbsoluteFile().getParentFile(), this.trainingTimeout, cli);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.swarm.bootstrap.m2.ArtifactStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * A layer installed by {@link BaseLayerBuilder} is resolved by the bootstrap's {@link ArtifactStore}, through the jar's index when it has one.
+ */
+public class BaseLayerBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testInstallAndResolve() throws Exception {
+        Path store = this.folder.newFolder("store").toPath();
+        BaseLayerBuilder layer = new BaseLayerBuilder()
+                .add(artifact("lib", null, "plain"))
+                .add(artifact("lib", "tests", "classified"));
+        layer.install(store);
+
+        ArtifactStore shared = new ArtifactStore(store);
+        assertEquals("plain", read(shared.resolve("org.example", "lib", "1.0-SNAPSHOT", null, "jar")));
+        assertEquals("classified", read(shared.resolve("org.example", "lib", "1.0-SNAPSHOT", "tests", "jar")));
+        assertNull(shared.resolve("org.example", "other", "1.0-SNAPSHOT", null, "jar"));
+
+        ArtifactStore pinned = new ArtifactStore(store, index(layer));
+        assertEquals("plain", read(pinned.resolve("org.example", "lib", "1.0-SNAPSHOT", null, "jar")));
+        assertEquals("classified", read(pinned.resolve("org.example", "lib", "1.0-SNAPSHOT", "tests", "jar")));
+    }
+
+    @Test
+    public void testRebuiltArtifactDoesNotReplaceAnother() throws Exception {
+        Path store = this.folder.newFolder("store").toPath();
+        BaseLayerBuilder first = new BaseLayerBuilder().add(artifact("lib", null, "first"));
+        first.install(store);
+
+        BaseLayerBuilder rebuilt = new BaseLayerBuilder().add(artifact("lib", null, "rebuilt"));
+        try {
+            rebuilt.install(store);
+            fail("replaced the index entry of another digest");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // as if the rebuilt layer were extracted over the store regardless
+        Path extracted = this.folder.newFolder("extracted").toPath();
+        rebuilt.install(extracted);
+        Files.walk(extracted).filter(Files::isRegularFile).forEach((each) -> {
+            try {
+                Path target = store.resolve(extracted.relativize(each).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(each, target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        assertEquals("rebuilt", read(new ArtifactStore(store).resolve("org.example", "lib", "1.0-SNAPSHOT", null, "jar")));
+        assertEquals("first", read(new ArtifactStore(store, index(first)).resolve("org.example", "lib", "1.0-SNAPSHOT", null, "jar")));
+    }
+
+    private ArtifactSpec artifact(String artifactId, String classifier, String content) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return new ArtifactSpec("compile", "org.example", artifactId, "1.0-SNAPSHOT", "jar", classifier, file);
+    }
+
+    private static Map<String, String> index(BaseLayerBuilder layer) throws IOException {
+        return ArtifactStore.readIndex(new ByteArrayInputStream(layer.writeIndex().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
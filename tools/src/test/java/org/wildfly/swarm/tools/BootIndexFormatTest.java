@@ -0,0 +1,53 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.wildfly.swarm.bootstrap.util.BootIndex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The boot index written by {@link BuildTool} is read by the bootstrap's {@link BootIndex}.
+ */
+public class BootIndexFormatTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<String> bootstrap = Arrays.asList("org.wildfly.swarm:wildfly-swarm-undertow:1.0.0", "org.wildfly.swarm:wildfly-swarm-io:1.0.0");
+        List<String> application = Arrays.asList("module:org.example", "gav:org.example:lib:1.0", "path:WEB-INF/lib/ü.jar");
+        Map<String, byte[]> descriptors = new LinkedHashMap<>();
+        descriptors.put("modules/org/example/main/module.xml", "<module name=\"org.example\"/>".getBytes(StandardCharsets.UTF_8));
+        descriptors.put("modules/org/empty/main/module.xml", new byte[0]);
+
+        BootIndex index = BootIndex.read(BuildTool.writeBootIndex(bootstrap, application, descriptors));
+
+        assertEquals(bootstrap, index.getBootstrapArtifacts());
+        assertEquals(application, index.getApplicationEntries());
+        for (Map.Entry<String, byte[]> each : descriptors.entrySet()) {
+            assertArrayEquals(each.getValue(), index.getModuleDescriptor(each.getKey()));
+        }
+        assertNull(index.getModuleDescriptor("modules/org/missing/main/module.xml"));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Results are reused for the same request against the same repositories, and never when they may change.
+ */
+public class CachingArtifactResolvingHelperTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReusesResult() throws Exception {
+        CountingHelper delegate = new CountingHelper(spec("1.0"));
+        Path cache = this.folder.newFolder().toPath();
+
+        Set<ArtifactSpec> first = new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request("1.0"));
+        Set<ArtifactSpec> second = new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request("1.0"));
+
+        assertEquals(1, delegate.count);
+        assertEquals(first, second);
+        assertEquals(first.iterator().next().file, second.iterator().next().file);
+    }
+
+    @Test
+    public void testKeyedByRepositories() throws Exception {
+        CountingHelper delegate = new CountingHelper(spec("1.0"));
+        Path cache = this.folder.newFolder().toPath();
+
+        new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request("1.0"));
+        new CachingArtifactResolvingHelper(delegate, "mirror=file:/tmp/mirror/", cache).resolveAll(request("1.0"));
+        new CachingArtifactResolvingHelper(delegate, "central;offline", cache).resolveAll(request("1.0"));
+
+        assertEquals(3, delegate.count);
+    }
+
+    @Test
+    public void testTransitiveSnapshotNotCached() throws Exception {
+        CountingHelper delegate = new CountingHelper(spec("1.0"), spec("2.0-20151022.153045-3"));
+        Path cache = this.folder.newFolder().toPath();
+
+        new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request("1.0"));
+        new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request("1.0"));
+
+        assertEquals(2, delegate.count);
+    }
+
+    @Test
+    public void testMetadataResolvedNotCached() throws Exception {
+        Path cache = this.folder.newFolder().toPath();
+        CountingHelper delegate = new CountingHelper(spec("1.0"));
+        CachingArtifactResolvingHelper helper = new CachingArtifactResolvingHelper(delegate, "central", cache);
+        // as though a transitive dependency were on a version range
+        delegate.during = (ignored) -> helper.uncacheable();
+
+        helper.resolveAll(request("1.0"));
+        delegate.during = null;
+        helper.resolveAll(request("1.0"));
+        helper.resolveAll(request("1.0"));
+
+        assertEquals(2, delegate.count);
+    }
+
+    @Test
+    public void testUnfixedRequestsNotCached() throws Exception {
+        CountingHelper delegate = new CountingHelper(spec("1.0"));
+        Path cache = this.folder.newFolder().toPath();
+
+        for (String version : new String[]{"1.0-SNAPSHOT", "[1.0,2.0)", "LATEST", null}) {
+            new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request(version));
+            new CachingArtifactResolvingHelper(delegate, "central", cache).resolveAll(request(version));
+        }
+
+        assertEquals(8, delegate.count);
+    }
+
+    @Test
+    public void testIsFixed() {
+        assertTrue(CachingArtifactResolvingHelper.isFixed("1.0.0.Final"));
+        assertFalse(CachingArtifactResolvingHelper.isFixed(null));
+        assertFalse(CachingArtifactResolvingHelper.isFixed("1.0-SNAPSHOT"));
+        assertFalse(CachingArtifactResolvingHelper.isFixed("1.0-20151022.153045-3"));
+        assertFalse(CachingArtifactResolvingHelper.isFixed("[1.0,)"));
+        assertFalse(CachingArtifactResolvingHelper.isFixed("(,2.0]"));
+        assertFalse(CachingArtifactResolvingHelper.isFixed("RELEASE"));
+    }
+
+    private static Set<ArtifactSpec> request(String version) {
+        return Collections.singleton(new ArtifactSpec("compile", "org.example", "app", version, "jar", null, null));
+    }
+
+    private ArtifactSpec spec(String version) throws Exception {
+        File file = this.folder.newFile("dep-" + version + ".jar");
+        return new ArtifactSpec("compile", "org.example", "dep", version, "jar", null, file);
+    }
+
+    private static class CountingHelper implements ArtifactResolvingHelper {
+
+        private final Set<ArtifactSpec> resolved = new HashSet<>();
+
+        Consumer<Set<ArtifactSpec>> during;
+
+        int count;
+
+        CountingHelper(ArtifactSpec... resolved) {
+            Collections.addAll(this.resolved, resolved);
+        }
+
+        @Override
+        public ArtifactSpec resolve(ArtifactSpec spec) throws Exception {
+            return spec;
+        }
+
+        @Override
+        public Set<ArtifactSpec> resolveAll(Set<ArtifactSpec> specs) throws Exception {
+            ++this.count;
+            if (this.during != null) {
+                this.during.accept(specs);
+            }
+            return new HashSet<>(this.resolved);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Build time and size of a -swarm.jar shaped archive, written by the ShrinkWrap exporter and by {@link JarWriter}.
+ *
+ * <p>Only run with {@code -Dswarm.benchmark=true}.</p>
+ */
+public class JarWriterBenchmarkTest {
+
+    private static final String BENCHMARK_PROPERTY = "swarm.benchmark";
+
+    private static final int NESTED_JARS = 40;
+
+    private static final int CLASSES = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBenchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        Path dir = this.folder.getRoot().toPath();
+        JavaArchive archive = JarWriterTest.createArchive(dir, CLASSES, NESTED_JARS);
+
+        File exported = dir.resolve("exported.jar").toFile();
+        long start = System.nanoTime();
+        archive.as(ZipExporter.class).exportTo(exported, true);
+        report("ZipExporter", start, exported);
+
+        File sequential = dir.resolve("sequential.jar").toFile();
+        start = System.nanoTime();
+        new JarWriter(sequential).parallelism(1).storeNestedArchives(false).write(archive);
+        report("JarWriter, 1 thread, deflating nested jars", start, sequential);
+
+        File parallel = dir.resolve("parallel.jar").toFile();
+        start = System.nanoTime();
+        new JarWriter(parallel).write(archive);
+        report("JarWriter, " + Runtime.getRuntime().availableProcessors() + " threads, storing nested jars", start, parallel);
+
+        File fastest = dir.resolve("fastest.jar").toFile();
+        start = System.nanoTime();
+        new JarWriter(fastest).level(Deflater.BEST_SPEED).write(archive);
+        report("JarWriter, best speed", start, fastest);
+
+        archive.add(new StringAsset("changed"), "META-INF/wildfly-swarm.properties");
+        start = System.nanoTime();
+        new JarWriter(parallel).write(archive);
+        report("JarWriter, incremental", start, parallel);
+    }
+
+    private static void report(String writer, long start, File jar) {
+        System.err.println(String.format(Locale.ROOT, "%s: %.1fms, %.1f MiB",
+                writer, (System.nanoTime() - start) / 1000000.0, jar.length() / (1024.0 * 1024.0)));
+    }
+}
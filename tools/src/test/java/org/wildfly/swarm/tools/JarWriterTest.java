@@ -0,0 +1,234 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link JarWriter} writes the same content as the ShrinkWrap exporter, stores nested jars,
+ * rewrites incrementally, and writes the same bytes for the same archive.
+ */
+public class JarWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameContentAsExporter() throws Exception {
+        Path dir = this.folder.getRoot().toPath();
+        JavaArchive archive = createArchive(dir, 100, 2);
+
+        File exported = dir.resolve("exported.jar").toFile();
+        archive.as(ZipExporter.class).exportTo(exported, true);
+
+        File sequential = dir.resolve("sequential.jar").toFile();
+        new JarWriter(sequential).parallelism(1).storeNestedArchives(false).write(archive);
+
+        File parallel = dir.resolve("parallel.jar").toFile();
+        new JarWriter(parallel).write(archive);
+
+        File fastest = dir.resolve("fastest.jar").toFile();
+        new JarWriter(fastest).level(Deflater.BEST_SPEED).write(archive);
+
+        Map<String, byte[]> expected = read(exported);
+        assertContent(expected, read(sequential));
+        assertContent(expected, read(parallel));
+        assertContent(expected, read(fastest));
+
+        assertMethods(sequential, ZipEntry.DEFLATED, ZipEntry.DEFLATED);
+        assertMethods(parallel, ZipEntry.DEFLATED, ZipEntry.STORED);
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        Path dir = this.folder.getRoot().toPath();
+        JavaArchive archive = createArchive(dir, 100, 2);
+        File jar = dir.resolve("incremental.jar").toFile();
+        new JarWriter(jar).write(archive);
+        Map<String, byte[]> expected = read(jar);
+
+        archive.add(new StringAsset("changed"), "META-INF/wildfly-swarm.properties");
+        JarWriter incremental = new JarWriter(jar);
+        incremental.write(archive);
+        assertEquals(1, incremental.getCompressedCount());
+
+        expected.put("META-INF/wildfly-swarm.properties", "changed".getBytes(StandardCharsets.UTF_8));
+        assertContent(expected, read(jar));
+        assertMethods(jar, ZipEntry.DEFLATED, ZipEntry.STORED);
+    }
+
+    @Test
+    public void testChangedSettingsRecompress() throws Exception {
+        Path dir = this.folder.getRoot().toPath();
+        JavaArchive archive = createArchive(dir, 100, 2);
+        File jar = dir.resolve("settings.jar").toFile();
+
+        new JarWriter(jar).storeNestedArchives(false).write(archive);
+        assertMethods(jar, ZipEntry.DEFLATED, ZipEntry.DEFLATED);
+
+        JarWriter stored = new JarWriter(jar);
+        stored.write(archive);
+        assertEquals(0, stored.getCopiedCount());
+        assertMethods(jar, ZipEntry.DEFLATED, ZipEntry.STORED);
+
+        JarWriter uncompressed = new JarWriter(jar).level(Deflater.NO_COMPRESSION);
+        uncompressed.write(archive);
+        assertEquals(0, uncompressed.getCopiedCount());
+        assertMethods(jar, ZipEntry.STORED, ZipEntry.STORED);
+
+        JarWriter unchanged = new JarWriter(jar).level(Deflater.NO_COMPRESSION);
+        unchanged.write(archive);
+        assertEquals(0, unchanged.getCompressedCount());
+    }
+
+    @Test
+    public void testReproducible() throws Exception {
+        Path dir = this.folder.getRoot().toPath();
+        JavaArchive archive = createArchive(dir, 100, 2);
+
+        File first = dir.resolve("first.jar").toFile();
+        new JarWriter(first).write(archive);
+        File second = dir.resolve("second.jar").toFile();
+        new JarWriter(second).write(archive);
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    public void testCannotWriteWithoutZip64() throws Exception {
+        File large = new File(this.folder.newFile("large.jar").getPath()) {
+            @Override
+            public long length() {
+                // only the size is read
+                return 5L * 1024 * 1024 * 1024;
+            }
+        };
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.add(new FileAsset(large), "m2repo/large.jar");
+        assertFalse(JarWriter.canWrite(archive));
+
+        JavaArchive small = ShrinkWrap.create(JavaArchive.class);
+        small.add(new StringAsset("small"), "small.txt");
+        assertTrue(JarWriter.canWrite(small));
+    }
+
+    static JavaArchive createArchive(Path dir, int classes, int nestedJars) throws IOException {
+        Random random = new Random(42);
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+
+        for (int i = 0; i < classes; ++i) {
+            archive.add(new StringAsset(text(random, 4 * 1024)), "org/wildfly/swarm/bootstrap/Class" + i + ".class");
+        }
+        for (int i = 0; i < nestedJars; ++i) {
+            File jar = dir.resolve("dependency-" + i + ".jar").toFile();
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+                for (int j = 0; j < 200; ++j) {
+                    out.putNextEntry(new ZipEntry("com/example/dependency" + i + "/Class" + j + ".class"));
+                    out.write(text(random, 8 * 1024).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            archive.add(new FileAsset(jar), "m2repo/com/example/dependency-" + i + "/1.0/dependency-" + i + "-1.0.jar");
+        }
+        archive.add(new StringAsset("Manifest-Version: 1.0\n"), "META-INF/MANIFEST.MF");
+        return archive;
+    }
+
+    private static String text(Random random, int length) {
+        String[] words = {"org", "jboss", "wildfly", "swarm", "Ljava/lang/String;", "invoke", "<init>", "Code", "()V"};
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(100));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the content of each file of the jar, by name; reading checks the CRC.
+     */
+    static Map<String, byte[]> read(File file) throws IOException {
+        Map<String, byte[]> content = new TreeMap<>();
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry each = entries.nextElement();
+                if (each.isDirectory()) {
+                    continue;
+                }
+                try (InputStream in = jar.getInputStream(each)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buf = new byte[8192];
+                    int len;
+                    while ((len = in.read(buf)) >= 0) {
+                        out.write(buf, 0, len);
+                    }
+                    content.put(each.getName(), out.toByteArray());
+                }
+            }
+        }
+        return content;
+    }
+
+    static void assertContent(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> each : expected.entrySet()) {
+            assertArrayEquals(each.getKey(), each.getValue(), actual.get(each.getKey()));
+        }
+    }
+
+    private static void assertMethods(File file, int classes, int nestedJars) throws IOException {
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry each = entries.nextElement();
+                if (each.getName().endsWith(".class")) {
+                    assertEquals(each.getName(), classes, each.getMethod());
+                } else if (each.getName().endsWith(".jar")) {
+                    assertEquals(each.getName(), nestedJars, each.getMethod());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The packages detected in parallel batches, and read back from the cache, match those of a full visit of every class.
+ */
+public class PackageDetectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesFullVisit() throws Exception {
+        File fixture = createFixture();
+
+        try (ZipFile zip = new ZipFile(fixture)) {
+            Map<String, Set<String>> expected = visitFully(zip);
+            Map<String, Set<String>> detected = new PackageDetector(null, ForkJoinPool.commonPool()).detect(zip);
+
+            assertTrue(expected.containsKey("org.objectweb.asm"));
+            assertTrue(expected.get("java.util.logging").contains(LocalSignature.class.getName()));
+            assertEquals(expected, detected);
+        }
+    }
+
+    @Test
+    public void testCachedMatchesFullVisit() throws Exception {
+        File fixture = createFixture();
+        Path cache = this.folder.newFolder("cache").toPath();
+
+        try (ZipFile zip = new ZipFile(fixture)) {
+            Map<String, Set<String>> expected = visitFully(zip);
+            new PackageDetector(cache, ForkJoinPool.commonPool()).detect(zip);
+
+            assertEquals(1, Files.list(cache).count());
+            assertEquals(expected, new PackageDetector(cache, ForkJoinPool.commonPool()).detect(zip));
+        }
+    }
+
+    /**
+     * The classes of the tools module, and of this test, with the ASM jar nested.
+     */
+    private File createFixture() throws IOException, URISyntaxException {
+        Path classes = location(PackageDetector.class);
+        Path testClasses = location(PackageDetectorTest.class);
+        Path asm = location(ClassReader.class);
+
+        File fixture = this.folder.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(fixture))) {
+            for (Path dir : new Path[]{classes, testClasses}) {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    for (Path each : files.filter((p) -> p.toString().endsWith(".class")).collect(Collectors.toList())) {
+                        out.putNextEntry(new ZipEntry(dir.relativize(each).toString().replace(File.separatorChar, '/')));
+                        Files.copy(each, out);
+                        out.closeEntry();
+                    }
+                }
+            }
+            out.putNextEntry(new ZipEntry("lib/" + asm.getFileName()));
+            Files.copy(asm, out);
+            out.closeEntry();
+        }
+        return fixture;
+    }
+
+    private static Path location(Class<?> cls) throws URISyntaxException {
+        return Paths.get(cls.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private static Map<String, Set<String>> visitFully(ZipFile zip) throws IOException {
+        Map<String, Set<String>> packages = new HashMap<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            try (InputStream in = zip.getInputStream(entry)) {
+                visitFully(entry.getName(), in, packages);
+            }
+        }
+        return packages;
+    }
+
+    private static void visitFully(String name, InputStream in, Map<String, Set<String>> packages) throws IOException {
+        if (name.endsWith(".jar")) {
+            ZipInputStream nested = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = nested.getNextEntry()) != null) {
+                visitFully(entry.getName(), nested, packages);
+            }
+        } else if (name.endsWith(".class")) {
+            PackageDetector.PackageCollector collector = new PackageDetector.PackageCollector();
+            new ClassReader(readFully(in)).accept(collector, 0);
+            for (Map.Entry<String, Set<String>> each : collector.packageSources().entrySet()) {
+                packages.computeIfAbsent(each.getKey(), (k) -> new HashSet<>()).addAll(each.getValue());
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * References java.util.logging only through the generic signature of a local variable.
+     */
+    static class LocalSignature {
+        int count() throws Exception {
+            Callable<java.util.logging.Level> level = null;
+            return level == null ? 0 : 1;
+        }
+    }
+}
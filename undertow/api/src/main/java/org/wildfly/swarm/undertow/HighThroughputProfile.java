@@ -0,0 +1,158 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.undertow;
+
+/**
+ * Listener and buffer settings for serving many concurrent connections.
+ *
+ * <p>Applied by {@link UndertowFraction#highThroughput(HighThroughputProfile)} to each
+ * listener of the fraction, and to the default buffer pool of the IO fraction, leaving
+ * any attribute which has been set explicitly untouched.</p>
+ *
+ * <p>The defaults enable HTTP/2, cleartext through {@code h2c} upgrade, and pool direct
+ * buffers of 16KiB, the size of a TLS record, so that a whole record is read or written
+ * by a single call. Socket buffers are left to the kernel, which tunes them per connection,
+ * unless sized here for a particular network. The accept backlog is capped by the kernel,
+ * by {@code net.core.somaxconn} on Linux.</p>
+ *
+ * <p>HTTP/2 over TLS is only negotiated when ALPN is available to the JVM; otherwise
+ * clients fall back to HTTP/1.1.</p>
+ */
+public class HighThroughputProfile {
+
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    public static final int DEFAULT_BUFFERS_PER_SLICE = 64;
+
+    public static final int DEFAULT_BACKLOG = 4096;
+
+    private boolean http2 = true;
+
+    private String tlsSecurityRealm;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private int buffersPerSlice = DEFAULT_BUFFERS_PER_SLICE;
+
+    private boolean directBuffers = true;
+
+    private Integer receiveBuffer;
+
+    private Integer sendBuffer;
+
+    private Integer maxConnections;
+
+    private int backlog = DEFAULT_BACKLOG;
+
+    /**
+     * Enable or disable HTTP/2 on each listener.
+     */
+    public HighThroughputProfile http2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    public boolean http2() {
+        return this.http2;
+    }
+
+    /**
+     * Add an HTTPS listener on the {@code https} socket binding, unless the server already has one.
+     *
+     * @param securityRealm The management security realm holding the server's SSL identity.
+     */
+    public HighThroughputProfile tls(String securityRealm) {
+        this.tlsSecurityRealm = securityRealm;
+        return this;
+    }
+
+    public String tlsSecurityRealm() {
+        return this.tlsSecurityRealm;
+    }
+
+    /**
+     * Size the buffers of the default buffer pool.
+     *
+     * @param bufferSize      The size of each buffer, in bytes.
+     * @param buffersPerSlice The number of buffers allocated at once.
+     * @param direct          Whether to allocate buffers outside of the heap.
+     */
+    public HighThroughputProfile buffers(int bufferSize, int buffersPerSlice, boolean direct) {
+        if (bufferSize < 1 || buffersPerSlice < 1) {
+            throw new IllegalArgumentException("Buffer size and buffers per slice must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.buffersPerSlice = buffersPerSlice;
+        this.directBuffers = direct;
+        return this;
+    }
+
+    public int bufferSize() {
+        return this.bufferSize;
+    }
+
+    public int buffersPerSlice() {
+        return this.buffersPerSlice;
+    }
+
+    public boolean directBuffers() {
+        return this.directBuffers;
+    }
+
+    /**
+     * Size the socket buffers of each connection, rather than leave them to the kernel.
+     *
+     * @param receiveBuffer {@code SO_RCVBUF}, in bytes.
+     * @param sendBuffer    {@code SO_SNDBUF}, in bytes.
+     */
+    public HighThroughputProfile socketBuffers(int receiveBuffer, int sendBuffer) {
+        this.receiveBuffer = receiveBuffer;
+        this.sendBuffer = sendBuffer;
+        return this;
+    }
+
+    public Integer receiveBuffer() {
+        return this.receiveBuffer;
+    }
+
+    public Integer sendBuffer() {
+        return this.sendBuffer;
+    }
+
+    /**
+     * Limit the number of connections each listener accepts at once; unlimited by default.
+     */
+    public HighThroughputProfile maxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public Integer maxConnections() {
+        return this.maxConnections;
+    }
+
+    /**
+     * Set the number of connections queued by the kernel while awaiting acceptance.
+     */
+    public HighThroughputProfile backlog(int backlog) {
+        this.backlog = backlog;
+        return this;
+    }
+
+    public int backlog() {
+        return this.backlog;
+    }
+}
@@ -18,6 +18,8 @@ package org.wildfly.swarm.undertow;
 import org.jboss.shrinkwrap.api.asset.Asset;
 import org.jboss.shrinkwrap.descriptor.api.Descriptors;
 import org.jboss.shrinkwrap.descriptor.api.jbossweb60.JbossWebDescriptor;
+import org.jboss.shrinkwrap.descriptor.spi.node.Node;
+import org.jboss.shrinkwrap.descriptor.spi.node.NodeDescriptor;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -48,6 +50,24 @@ public class JBossWebAsset implements Asset{
         rootSet = true;
     }
 
+    /**
+     * Run the servlet requests of the deployment on the named executor service, rather than
+     * on the task threads of the IO worker.
+     *
+     * @param executorName the name of a service under {@code jboss.thread.executor}.
+     */
+    public void setExecutorName(String executorName) {
+        ((NodeDescriptor) this.descriptor).getRootNode().getOrCreate("executor-name").text(executorName);
+    }
+
+    /**
+     * @return the executor the servlet requests of the deployment run on, or {@code null} for the IO worker's task threads.
+     */
+    public String getExecutorName() {
+        Node node = ((NodeDescriptor) this.descriptor).getRootNode().getSingle("executor-name");
+        return node == null ? null : node.getText();
+    }
+
     public boolean isRootSet() {
         return rootSet;
     }
@@ -15,27 +15,110 @@
  */
 package org.wildfly.swarm.undertow;
 
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
 import org.wildfly.swarm.config.Undertow;
 import org.wildfly.swarm.config.undertow.BufferCache;
 import org.wildfly.swarm.config.undertow.HandlerConfiguration;
 import org.wildfly.swarm.config.undertow.Server;
 import org.wildfly.swarm.config.undertow.ServletContainer;
+import org.wildfly.swarm.config.io.BufferPool;
 import org.wildfly.swarm.config.undertow.server.HTTPListener;
+import org.wildfly.swarm.config.undertow.server.HttpsListener;
 import org.wildfly.swarm.config.undertow.server.Host;
 import org.wildfly.swarm.config.undertow.servlet_container.JSPSetting;
 import org.wildfly.swarm.config.undertow.servlet_container.WebsocketsSetting;
 import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.Fraction;
 import org.wildfly.swarm.container.SocketBinding;
+import org.wildfly.swarm.io.IOFraction;
 
 /**
  * @author Bob McWhirter
  */
 public class UndertowFraction extends Undertow<UndertowFraction> implements Fraction {
 
+    /**
+     * Set to {@code elastic} to dispatch elastically without configuring the fraction.
+     */
+    public static final String DISPATCH_PROPERTY = "swarm.undertow.dispatch";
+
+    private boolean elasticDispatch = "elastic".equals(System.getProperty(DISPATCH_PROPERTY));
+
+    /**
+     * Set to {@code high-throughput} to apply the {@link HighThroughputProfile} with its defaults.
+     */
+    public static final String PROFILE_PROPERTY = "swarm.undertow.profile";
+
+    private ExecutorTopology.Pool dispatchPool;
+
+    private HighThroughputProfile profile = "high-throughput".equals(System.getProperty(PROFILE_PROPERTY)) ? new HighThroughputProfile() : null;
+
     public UndertowFraction() {
     }
 
+    /**
+     * Run servlet requests, including JAX-RS resources, on the container's elastic pool
+     * rather than on the task threads of the IO worker.
+     *
+     * <p>Suits applications which spend most of each request blocked, such as on JDBC or
+     * remote calls, as a request no longer waits for a task thread to become free.</p>
+     *
+     * @return This fraction.
+     * @see ExecutorTopology#ELASTIC
+     */
+    public UndertowFraction elasticDispatch() {
+        this.elasticDispatch = true;
+        return this;
+    }
+
+    public boolean isElasticDispatch() {
+        return this.elasticDispatch;
+    }
+
+    /**
+     * @return the pool to dispatch servlet requests to, or {@code null} to use the IO worker.
+     */
+    public ExecutorTopology.Pool dispatchPool() {
+        return this.elasticDispatch ? this.dispatchPool : null;
+    }
+
+    /**
+     * Apply the high-throughput profile, with its defaults.
+     *
+     * @return This fraction.
+     */
+    public UndertowFraction highThroughput() {
+        return highThroughput(new HighThroughputProfile());
+    }
+
+    /**
+     * Tune the listeners, and the IO buffer pool they use, for many concurrent connections.
+     *
+     * @param profile The settings to apply.
+     * @return This fraction.
+     */
+    public UndertowFraction highThroughput(HighThroughputProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * @return the high-throughput profile applied, or {@code null}.
+     */
+    public HighThroughputProfile highThroughputProfile() {
+        return this.profile;
+    }
+
+    /**
+     * @return the default fraction, tuned by the high-throughput profile.
+     */
+    public static UndertowFraction createHighThroughputFraction() {
+        return createDefaultFraction().highThroughput();
+    }
+
     public static UndertowFraction createDefaultFraction() {
         UndertowFraction fraction = new UndertowFraction();
 
@@ -62,4 +145,111 @@ public class UndertowFraction extends Undertow<UndertowFraction> implements Frac
                 new SocketBinding("https")
                         .port("${jboss.https.port:8443}"));
     }
+
+    @Override
+    public void postInitialize(Container.PostInitContext initContext) {
+        this.dispatchPool = initContext.executors().get(ExecutorTopology.ELASTIC);
+
+        if (this.profile != null) {
+            applyProfile((IOFraction) initContext.fraction("io"));
+        }
+    }
+
+    private void applyProfile(IOFraction io) {
+        HighThroughputProfile profile = this.profile;
+
+        for (Server<?> server : subresources().servers()) {
+            for (HTTPListener<?> listener : server.subresources().httpListeners()) {
+                HTTP_LISTENER.tune(listener, profile);
+            }
+
+            if (profile.tlsSecurityRealm() != null && server.subresources().httpsListeners().isEmpty()) {
+                server.httpsListener(new HttpsListener("https")
+                        .socketBinding("https")
+                        .securityRealm(profile.tlsSecurityRealm()));
+            }
+            for (HttpsListener<?> listener : server.subresources().httpsListeners()) {
+                HTTPS_LISTENER.tune(listener, profile);
+            }
+        }
+
+        // the buffer cache is left alone: its buffers-per-region and max-regions are counts,
+        // so larger buffers would multiply the heap it holds for static content
+
+        if (io == null) {
+            return;
+        }
+        for (BufferPool pool : io.subresources().bufferPools()) {
+            if (pool.bufferSize() == null) {
+                pool.bufferSize(profile.bufferSize());
+            }
+            if (pool.buffersPerSlice() == null) {
+                pool.buffersPerSlice(profile.buffersPerSlice());
+            }
+            if (pool.directBuffers() == null) {
+                pool.directBuffers(profile.directBuffers());
+            }
+        }
+    }
+
+    private static final ListenerAttributes<HTTPListener> HTTP_LISTENER = new ListenerAttributes<>(
+            HTTPListener::enableHttp2, HTTPListener::enableHttp2,
+            HTTPListener::tcpBacklog, HTTPListener::tcpBacklog,
+            HTTPListener::maxConnections, HTTPListener::maxConnections,
+            HTTPListener::receiveBuffer, HTTPListener::receiveBuffer,
+            HTTPListener::sendBuffer, HTTPListener::sendBuffer);
+
+    private static final ListenerAttributes<HttpsListener> HTTPS_LISTENER = new ListenerAttributes<>(
+            HttpsListener::enableHttp2, HttpsListener::enableHttp2,
+            HttpsListener::tcpBacklog, HttpsListener::tcpBacklog,
+            HttpsListener::maxConnections, HttpsListener::maxConnections,
+            HttpsListener::receiveBuffer, HttpsListener::receiveBuffer,
+            HttpsListener::sendBuffer, HttpsListener::sendBuffer);
+
+    /**
+     * The attributes tuned by the profile, which the HTTP and HTTPS listeners share without a common type.
+     */
+    private static class ListenerAttributes<L> {
+        private final Function<L, Boolean> http2;
+        private final BiConsumer<L, Boolean> enableHttp2;
+        private final Function<L, Integer> backlog;
+        private final BiConsumer<L, Integer> tcpBacklog;
+        private final Function<L, Integer> maxConnections;
+        private final BiConsumer<L, Integer> setMaxConnections;
+        private final Function<L, Integer> receiveBuffer;
+        private final BiConsumer<L, Integer> setReceiveBuffer;
+        private final Function<L, Integer> sendBuffer;
+        private final BiConsumer<L, Integer> setSendBuffer;
+
+        ListenerAttributes(Function<L, Boolean> http2, BiConsumer<L, Boolean> enableHttp2,
+                           Function<L, Integer> backlog, BiConsumer<L, Integer> tcpBacklog,
+                           Function<L, Integer> maxConnections, BiConsumer<L, Integer> setMaxConnections,
+                           Function<L, Integer> receiveBuffer, BiConsumer<L, Integer> setReceiveBuffer,
+                           Function<L, Integer> sendBuffer, BiConsumer<L, Integer> setSendBuffer) {
+            this.http2 = http2;
+            this.enableHttp2 = enableHttp2;
+            this.backlog = backlog;
+            this.tcpBacklog = tcpBacklog;
+            this.maxConnections = maxConnections;
+            this.setMaxConnections = setMaxConnections;
+            this.receiveBuffer = receiveBuffer;
+            this.setReceiveBuffer = setReceiveBuffer;
+            this.sendBuffer = sendBuffer;
+            this.setSendBuffer = setSendBuffer;
+        }
+
+        void tune(L listener, HighThroughputProfile profile) {
+            defaultTo(listener, this.http2, this.enableHttp2, profile.http2());
+            defaultTo(listener, this.backlog, this.tcpBacklog, profile.backlog());
+            defaultTo(listener, this.maxConnections, this.setMaxConnections, profile.maxConnections());
+            defaultTo(listener, this.receiveBuffer, this.setReceiveBuffer, profile.receiveBuffer());
+            defaultTo(listener, this.sendBuffer, this.setSendBuffer, profile.sendBuffer());
+        }
+
+        private static <L, T> void defaultTo(L listener, Function<L, T> getter, BiConsumer<L, T> setter, T value) {
+            if (value != null && getter.apply(listener) == null) {
+                setter.accept(listener, value);
+            }
+        }
+    }
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.undertow.runtime;
+
+import java.util.concurrent.Executor;
+
+import org.jboss.msc.service.ServiceActivator;
+import org.jboss.msc.service.ServiceActivatorContext;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceRegistryException;
+import org.jboss.msc.service.ValueService;
+import org.jboss.msc.value.ImmediateValue;
+import org.wildfly.extension.io.IOServices;
+
+/**
+ * Provides the elastic pool as an executor service, on which web deployments naming it
+ * in their {@code jboss-web.xml} run their servlet requests, rather than on the task
+ * threads of the IO worker.
+ *
+ * <p>Thread setup actions and handler wrappers, such as those associating the Keycloak
+ * security context, still run on the thread handling the request, and undo their
+ * association once it completes, so thread-locals hold for exactly one request.</p>
+ */
+public class ElasticDispatchActivator implements ServiceActivator {
+
+    public static final String EXECUTOR_NAME = "swarm-elastic";
+
+    /**
+     * Where the undertow subsystem looks up the executor named by a deployment.
+     */
+    public static final ServiceName SERVICE_NAME = IOServices.WORKER.append(EXECUTOR_NAME);
+
+    private final Executor executor;
+
+    public ElasticDispatchActivator(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void activate(ServiceActivatorContext context) throws ServiceRegistryException {
+        context.getServiceTarget().addService(SERVICE_NAME, new ValueService<>(new ImmediateValue<>(this.executor)))
+                .install();
+    }
+}
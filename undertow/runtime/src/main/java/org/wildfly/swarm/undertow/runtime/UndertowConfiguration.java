@@ -16,12 +16,18 @@
 package org.wildfly.swarm.undertow.runtime;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.jboss.dmr.ModelNode;
+import org.jboss.msc.service.ServiceActivator;
+import org.jboss.shrinkwrap.api.Archive;
 import org.wildfly.swarm.config.runtime.invocation.Marshaller;
+import org.wildfly.swarm.container.ExecutorTopology;
 import org.wildfly.swarm.container.runtime.AbstractServerConfiguration;
+import org.wildfly.swarm.undertow.JBossWebAsset;
 import org.wildfly.swarm.undertow.UndertowFraction;
+import org.wildfly.swarm.undertow.WARArchive;
 
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.EXTENSION;
@@ -43,6 +49,34 @@ public class UndertowConfiguration extends AbstractServerConfiguration<UndertowF
         return UndertowFraction.createDefaultFraction();
     }
 
+    /**
+     * Whether the fraction dispatches elastically, as recorded when its service activators are
+     * obtained, which is always on start, unlike {@link #getList(UndertowFraction)}, whose
+     * operations may be compiled.
+     */
+    private volatile boolean elasticDispatch;
+
+    @Override
+    public List<ServiceActivator> getServiceActivators(UndertowFraction fraction) {
+        ExecutorTopology.Pool pool = fraction.dispatchPool();
+        this.elasticDispatch = (pool != null);
+        if (pool == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new ElasticDispatchActivator(pool.executor()));
+    }
+
+    @Override
+    public void prepareArchive(Archive a) {
+        if (!this.elasticDispatch || !a.getName().endsWith(".war")) {
+            return;
+        }
+        JBossWebAsset jbossWeb = a.as(WARArchive.class).findJbossWebAsset();
+        if (jbossWeb.getExecutorName() == null) {
+            jbossWeb.setExecutorName(ElasticDispatchActivator.EXECUTOR_NAME);
+        }
+    }
+
     @Override
     public List<ModelNode> getList(UndertowFraction fraction) throws Exception {
         List<ModelNode> list = new ArrayList<>();
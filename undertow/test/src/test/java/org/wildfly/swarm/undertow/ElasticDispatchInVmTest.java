@@ -0,0 +1,135 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.undertow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.junit.Test;
+import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.ExecutorTopology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Requests which block, under concurrency beyond the IO worker's task threads, run against
+ * the default worker and then dispatched to the elastic pool.
+ */
+public class ElasticDispatchInVmTest {
+
+    private static final int CLIENTS = 256;
+
+    private static final int REQUESTS = 2048;
+
+    @Test
+    public void testThroughput() throws Exception {
+        double worker = run("worker", UndertowFraction.createDefaultFraction(), null);
+        double elastic = run("elastic", UndertowFraction.createDefaultFraction().elasticDispatch(), "swarm-" + ExecutorTopology.ELASTIC + "-");
+
+        System.err.println(String.format(Locale.ROOT, "elastic/worker: %.2fx", elastic / worker));
+    }
+
+    /**
+     * @param threadPrefix the prefix of the thread names every request must run on, or {@code null} for any
+     * @return the requests per second
+     */
+    private double run(String label, UndertowFraction fraction, String threadPrefix) throws Exception {
+        Container container = new Container();
+        container.fraction(fraction);
+        container.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            WARArchive deployment = ShrinkWrap.create(WARArchive.class, "blocking.war");
+            deployment.addClass(BlockingServlet.class);
+            container.deploy(deployment);
+
+            // warm up
+            assertThread(threadPrefix, get());
+
+            long start = System.nanoTime();
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; ++i) {
+                responses.add(clients.submit(ElasticDispatchInVmTest::get));
+            }
+            for (Future<String> each : responses) {
+                assertThread(threadPrefix, each.get());
+            }
+            long nanos = System.nanoTime() - start;
+
+            double throughput = REQUESTS / (nanos / 1000000000.0);
+            System.err.println(String.format(Locale.ROOT, "%s: %d requests from %d clients in %.1fms, %.0f req/s",
+                    label, REQUESTS, CLIENTS, nanos / 1000000.0, throughput));
+            return throughput;
+        } finally {
+            clients.shutdownNow();
+            container.stop();
+        }
+    }
+
+    private static void assertThread(String prefix, String thread) {
+        if (prefix == null) {
+            assertFalse(thread.isEmpty());
+        } else {
+            assertTrue(thread, thread.startsWith(prefix));
+        }
+    }
+
+    private static String get() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:8080/blocking").openConnection();
+        try {
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buf = new byte[256];
+                int len = in.read(buf);
+                return new String(buf, 0, Math.max(len, 0), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @WebServlet("/blocking")
+    public static class BlockingServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            try {
+                // stands in for a call to a database or remote service
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.getWriter().write(Thread.currentThread().getName());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2015 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.undertow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.junit.Test;
+import org.wildfly.swarm.container.Container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Throughput of the high-throughput profile's defaults, from one keep-alive client per core and then eight.
+ */
+public class HighThroughputInVmTest {
+
+    private static final int REQUESTS_PER_CLIENT = 500;
+
+    private static final int RESPONSE_SIZE = 64 * 1024;
+
+    private static final String LISTENER = "[{\"subsystem\":\"undertow\"},{\"server\":\"default-server\"},{\"http-listener\":\"default\"}]";
+
+    @Test
+    public void testThroughput() throws Exception {
+        Container container = new Container();
+        container.fraction(UndertowFraction.createHighThroughputFraction());
+        container.start();
+        try {
+            assertTrue(readListener(container, "enable-http2").contains("true"));
+            assertTrue(readListener(container, "tcp-backlog").contains(String.valueOf(HighThroughputProfile.DEFAULT_BACKLOG)));
+
+            WARArchive deployment = ShrinkWrap.create(WARArchive.class, "payload.war");
+            deployment.addClass(PayloadServlet.class);
+            container.deploy(deployment);
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            // warm up
+            run(cores, 100);
+
+            run(cores, REQUESTS_PER_CLIENT);
+            run(cores * 8, REQUESTS_PER_CLIENT);
+        } finally {
+            container.stop();
+        }
+    }
+
+    private static String readListener(Container container, String attribute) throws Exception {
+        return container.managementClient().execute(
+                "{\"operation\":\"read-attribute\",\"address\":" + LISTENER + ",\"name\":\"" + attribute + "\"}").get();
+    }
+
+    private static void run(int clients, int requestsPerClient) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            long start = System.nanoTime();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < clients; ++i) {
+                results.add(executor.submit(() -> {
+                    long bytes = 0;
+                    byte[] buf = new byte[8192];
+                    for (int j = 0; j < requestsPerClient; ++j) {
+                        bytes += get(buf);
+                    }
+                    return bytes;
+                }));
+            }
+            long bytes = 0;
+            for (Future<Long> each : results) {
+                bytes += each.get();
+            }
+            long nanos = System.nanoTime() - start;
+
+            assertEquals((long) clients * requestsPerClient * RESPONSE_SIZE, bytes);
+            double seconds = nanos / 1000000000.0;
+            System.err.println(String.format(Locale.ROOT, "%d clients: %d requests in %.1fms, %.0f req/s, %.1f MiB/s",
+                    clients, clients * requestsPerClient, nanos / 1000000.0,
+                    clients * requestsPerClient / seconds, bytes / seconds / (1024 * 1024)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long get(byte[] buf) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:8080/payload").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        long bytes = 0;
+        // read fully and close, rather than disconnect, so the connection is kept alive
+        try (InputStream in = connection.getInputStream()) {
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                bytes += len;
+            }
+        }
+        return bytes;
+    }
+
+    @WebServlet("/payload")
+    public static class PayloadServlet extends HttpServlet {
+
+        private static final byte[] PAYLOAD = new byte[RESPONSE_SIZE];
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentLength(PAYLOAD.length);
+            resp.getOutputStream().write(PAYLOAD);
+        }
+    }
+}